@@ -0,0 +1,66 @@
+package newfacts;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bitmaps of the facts of a FactList for each distinct type and author, keyed by the
+ * lower-cased value. Used by compound queries to narrow the facts to check before
+ * comparing any text. The lower-cased values are kept once per distinct value in the
+ * index, instead of on every fact, as the values themselves are shared between facts.
+ */
+class BitmapIndex {
+    private final Map<String, FactBitmap> types = new HashMap<>(); // Facts of each type
+    private final Map<String, FactBitmap> authors = new HashMap<>(); // Facts of each author
+    private final Map<String, String> keys = new HashMap<>(); // Lower-cased value of each distinct type and author
+
+    /**
+     * Adds a fact to the bitmaps of its type and author.
+     *
+     * @param id   The position of the fact in the list.
+     * @param fact The fact.
+     */
+    void add(int id, Fact fact) {
+        if (fact.getType() != null)
+            types.computeIfAbsent(key(fact.getType()), k -> new FactBitmap()).add(id);
+        if (fact.getAuthor() != null)
+            authors.computeIfAbsent(key(fact.getAuthor()), k -> new FactBitmap()).add(id);
+    }
+
+    /**
+     * Gets the lower-cased value of a type or author, lowering it only the first time.
+     *
+     * @param value The type or author.
+     * @return The lower-cased value.
+     */
+    private String key(String value) {
+        return keys.computeIfAbsent(value, String::toLowerCase);
+    }
+
+    /**
+     * Finds the facts matching the type and author conditions of a query.
+     *
+     * @param query The query.
+     * @return The facts matching the conditions, or null if the query has none.
+     */
+    FactBitmap select(FactQuery query) {
+        FactBitmap result = null;
+        if (query.getType() != null)
+            result = types.getOrDefault(query.getType(), new FactBitmap());
+        if (query.getAuthor() != null)
+            result = and(result, authors.getOrDefault(query.getAuthor(), new FactBitmap()));
+        if (query.getAuthorTerm() != null) {
+            FactBitmap containing = new FactBitmap();
+            for (Map.Entry<String, FactBitmap> entry : authors.entrySet()) {
+                if (entry.getKey().contains(query.getAuthorTerm()))
+                    containing = FactBitmap.or(containing, entry.getValue());
+            }
+            result = and(result, containing);
+        }
+        return result;
+    }
+
+    private static FactBitmap and(FactBitmap a, FactBitmap b) {
+        return a == null ? b : FactBitmap.and(a, b);
+    }
+}
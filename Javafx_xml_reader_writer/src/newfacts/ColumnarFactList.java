@@ -0,0 +1,161 @@
+package newfacts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A column-oriented list of facts for analytics-style queries, such as all fallacies
+ * of one author. Authors and types are dictionary-encoded: each column holds an int
+ * id per fact, and the distinct values are kept once in a dictionary. Filters on author
+ * or type compare each distinct value once and then scan the int column, instead of
+ * calling the getters of every Fact. Texts are kept in their own column.
+ * <p>
+ * Facts are created only when they are retrieved. The list is not thread-safe.
+ */
+public class ColumnarFactList {
+    private final StringDictionary authors = new StringDictionary(Integer.MAX_VALUE, Integer.MAX_VALUE); // Author values by id
+    private final StringDictionary types = new StringDictionary(Integer.MAX_VALUE, Integer.MAX_VALUE); // Type values by id
+    private int[] authorIds = new int[16]; // Author id of each fact, -1 if not set
+    private int[] typeIds = new int[16]; // Type id of each fact, -1 if not set
+    private String[] texts = new String[16]; // Text of each fact
+    private String[] textKeys = new String[16]; // Lower-cased text of each fact, computed on first search
+    private int size = 0; // Number of facts
+
+    /**
+     * Constructs an empty columnar fact list.
+     */
+    public ColumnarFactList() {
+        super();
+    }
+
+    /**
+     * Constructs a columnar fact list holding the facts of the given list.
+     *
+     * @param list The facts to be added.
+     */
+    public ColumnarFactList(FactList list) {
+        for (int i = 0; i < list.getSize(); i++)
+            add(list.get(i));
+    }
+
+    /**
+     * Adds a fact to the list.
+     *
+     * @param fact The fact to be added.
+     */
+    public void add(Fact fact) {
+        if (size == texts.length) {
+            int length = size * 2;
+            authorIds = Arrays.copyOf(authorIds, length);
+            typeIds = Arrays.copyOf(typeIds, length);
+            texts = Arrays.copyOf(texts, length);
+            textKeys = Arrays.copyOf(textKeys, length);
+        }
+        authorIds[size] = fact.getAuthor() == null ? -1 : authors.idOf(fact.getAuthor());
+        typeIds[size] = fact.getType() == null ? -1 : types.idOf(fact.getType());
+        texts[size] = fact.getText();
+        size++;
+    }
+
+    /**
+     * Adds all given facts to the list.
+     *
+     * @param facts The facts to be added.
+     */
+    public void addAll(Collection<Fact> facts) {
+        for (Fact fact : facts)
+            add(fact);
+    }
+
+    /**
+     * Retrieves the size of the list.
+     *
+     * @return The number of facts in the list.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Retrieves the fact at the specified index. Every call returns a new Fact object.
+     *
+     * @param i The index of the fact to retrieve.
+     * @return The fact at the specified index, or null if the index is out of range.
+     */
+    public Fact get(int i) {
+        if (i < 0 || i >= size)
+            return null;
+        return new Fact(authorIds[i] < 0 ? null : authors.get(authorIds[i]),
+                typeIds[i] < 0 ? null : types.get(typeIds[i]), texts[i]);
+    }
+
+    /**
+     * Selects the facts with the given author and type, ignoring case. Each distinct
+     * author and type is compared once; the facts are then found by scanning the id columns.
+     *
+     * @param author The author of the facts, or null for any author.
+     * @param type   The type of the facts, or null for any type.
+     * @return A list of the matching facts, or null if none match.
+     */
+    public List<Fact> select(String author, String type) {
+        boolean[] authorMatches = author == null ? null : equalIds(authors, author);
+        boolean[] typeMatches = type == null ? null : equalIds(types, type);
+        List<Fact> result = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (matches(authorMatches, authorIds[i]) && matches(typeMatches, typeIds[i]))
+                result.add(get(i));
+        }
+        return result.size() > 0 ? result : null;
+    }
+
+    /**
+     * Searches for facts whose field selected by the search mode contains the given
+     * search term, ignoring case, like {@link FactList#search(String, FactSearchMode)}.
+     *
+     * @param searchTerm The search term to match against fact attributes.
+     * @param mode       The field to search, or ALL for any field.
+     * @return A list of facts that match the search term, or null if none match.
+     */
+    public List<Fact> search(String searchTerm, FactSearchMode mode) {
+        final String searchText = searchTerm.toLowerCase();
+        boolean all = mode == FactSearchMode.ALL;
+        boolean[] authorMatches = all || mode == FactSearchMode.AUTHOR ? containingIds(authors, searchText) : null;
+        boolean[] typeMatches = all || mode == FactSearchMode.TYPE ? containingIds(types, searchText) : null;
+        boolean text = all || mode == FactSearchMode.TEXT;
+        List<Fact> result = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (authorMatches != null && authorIds[i] >= 0 && authorMatches[authorIds[i]]
+                    || typeMatches != null && typeIds[i] >= 0 && typeMatches[typeIds[i]]
+                    || text && texts[i] != null && textKey(i).contains(searchText))
+                result.add(get(i));
+        }
+        return result.size() > 0 ? result : null;
+    }
+
+    private String textKey(int i) {
+        String key = textKeys[i];
+        if (key == null)
+            textKeys[i] = key = texts[i].toLowerCase();
+        return key;
+    }
+
+    private static boolean matches(boolean[] matches, int id) {
+        return matches == null || id >= 0 && matches[id];
+    }
+
+    private static boolean[] equalIds(StringDictionary dictionary, String value) {
+        boolean[] matches = new boolean[dictionary.size()];
+        for (int id = 0; id < matches.length; id++)
+            matches[id] = dictionary.get(id).equalsIgnoreCase(value);
+        return matches;
+    }
+
+    private static boolean[] containingIds(StringDictionary dictionary, String searchText) {
+        boolean[] matches = new boolean[dictionary.size()];
+        for (int id = 0; id < matches.length; id++)
+            matches[id] = dictionary.get(id).toLowerCase().contains(searchText);
+        return matches;
+    }
+}
@@ -8,6 +8,9 @@ public class Fact {
     private String author; // Author of the fact
     private String type; // Type of the fact
     private String text; // Content of the fact
+    private String authorKey; // Lower-cased author for searching, computed on first use
+    private String typeKey; // Lower-cased type for searching, computed on first use
+    private String textKey; // Lower-cased text for searching, computed on first use
 
     /**
      * Get the author of the fact.
@@ -23,6 +26,7 @@ public class Fact {
      */
     public void setAuthor(String author) {
         this.author = author;
+        this.authorKey = null;
     }
 
     /**
@@ -39,6 +43,7 @@ public class Fact {
      */
     public void setType(String type) {
         this.type = type;
+        this.typeKey = null;
     }
 
     /**
@@ -55,6 +60,43 @@ public class Fact {
      */
     public void setText(String text) {
         this.text = text;
+        this.textKey = null;
+    }
+
+    /**
+     * Get the lower-cased author used for case-insensitive searches.
+     * It is computed once and kept until the author changes.
+     * @return The lower-cased author, or null if the author is not set.
+     */
+    public String getAuthorKey() {
+        String key = authorKey;
+        if (key == null && author != null)
+            authorKey = key = author.toLowerCase();
+        return key;
+    }
+
+    /**
+     * Get the lower-cased type used for case-insensitive searches.
+     * It is computed once and kept until the type changes.
+     * @return The lower-cased type, or null if the type is not set.
+     */
+    public String getTypeKey() {
+        String key = typeKey;
+        if (key == null && type != null)
+            typeKey = key = type.toLowerCase();
+        return key;
+    }
+
+    /**
+     * Get the lower-cased text used for case-insensitive searches.
+     * It is computed once and kept until the text changes.
+     * @return The lower-cased text, or null if the text is not set.
+     */
+    public String getTextKey() {
+        String key = textKey;
+        if (key == null && text != null)
+            textKey = key = text.toLowerCase();
+        return key;
     }
 
     /**
@@ -0,0 +1,378 @@
+package newfacts;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of fact ids in the style of a Roaring bitmap. Ids are grouped by
+ * their upper 16 bits; each group is stored as a sorted array of the lower 16 bits
+ * while it is sparse, and as a 65536-bit bitmap once it holds more than
+ * {@link #ARRAY_LIMIT} ids. Intersections and unions work container by container.
+ * Ids are usually added in increasing order, since facts are only ever appended to a FactList.
+ */
+class FactBitmap {
+    static final int ARRAY_LIMIT = 4096; // Most ids kept in an array container
+
+    private char[] keys = new char[4]; // Upper 16 bits of the ids of each container, sorted
+    private Container[] containers = new Container[4]; // Lower 16 bits of the ids, by key
+    private int size = 0; // Number of containers
+
+    /**
+     * Adds a fact id.
+     *
+     * @param id The fact id, not negative.
+     */
+    void add(int id) {
+        char key = (char) (id >>> 16);
+        int i = size > 0 && keys[size - 1] == key ? size - 1 : find(key);
+        if (i < 0) {
+            i = -i - 1;
+            insert(i, key, new ArrayContainer());
+        }
+        containers[i] = containers[i].add((char) id);
+    }
+
+    /**
+     * Checks whether the set contains a fact id.
+     *
+     * @param id The fact id.
+     * @return True if the id is in the set.
+     */
+    boolean contains(int id) {
+        int i = find((char) (id >>> 16));
+        return id >= 0 && i >= 0 && containers[i].contains((char) id);
+    }
+
+    /**
+     * Counts the ids in the set.
+     *
+     * @return The number of ids.
+     */
+    int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++)
+            cardinality += containers[i].cardinality();
+        return cardinality;
+    }
+
+    /**
+     * Copies the ids into a new array.
+     *
+     * @return The sorted fact ids.
+     */
+    int[] toArray() {
+        int[] ids = new int[cardinality()];
+        int position = 0;
+        for (int i = 0; i < size; i++)
+            position = containers[i].copyTo(keys[i] << 16, ids, position);
+        return ids;
+    }
+
+    /**
+     * Intersects two sets.
+     *
+     * @param a The first set.
+     * @param b The second set.
+     * @return A new set of the ids in both sets.
+     */
+    static FactBitmap and(FactBitmap a, FactBitmap b) {
+        FactBitmap result = new FactBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Container container = a.containers[i].and(b.containers[j]);
+                if (container.cardinality() > 0)
+                    result.insert(result.size, a.keys[i], container);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Unites two sets.
+     *
+     * @param a The first set.
+     * @param b The second set.
+     * @return A new set of the ids in either set.
+     */
+    static FactBitmap or(FactBitmap a, FactBitmap b) {
+        FactBitmap result = new FactBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.size || j < b.size) {
+            if (j >= b.size || i < a.size && a.keys[i] < b.keys[j]) {
+                result.insert(result.size, a.keys[i], a.containers[i].or(new ArrayContainer()));
+                i++;
+            } else if (i >= a.size || a.keys[i] > b.keys[j]) {
+                result.insert(result.size, b.keys[j], b.containers[j].or(new ArrayContainer()));
+                j++;
+            } else {
+                result.insert(result.size, a.keys[i], a.containers[i].or(b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int i, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = container;
+        size++;
+    }
+
+    /**
+     * The lower 16 bits of the ids sharing the same upper 16 bits.
+     */
+    private abstract static class Container {
+        /**
+         * Adds a value, converting the container when it becomes dense.
+         *
+         * @return The container holding the value, possibly a new one.
+         */
+        abstract Container add(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract Container and(Container other);
+
+        /**
+         * Unites the container with another one.
+         *
+         * @return A new container; neither container is changed.
+         */
+        abstract Container or(Container other);
+
+        /**
+         * Copies the ids of the container, in increasing order.
+         *
+         * @return The position after the last copied id.
+         */
+        abstract int copyTo(int high, int[] ids, int position);
+    }
+
+    /**
+     * A sparse container: the sorted values.
+     */
+    private static class ArrayContainer extends Container {
+        private char[] values; // Sorted values
+        private int cardinality = 0; // Number of values
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int i = cardinality > 0 && values[cardinality - 1] < value ? -cardinality - 1
+                    : Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0)
+                return this;
+            if (cardinality == ARRAY_LIMIT)
+                return new BitmapContainer(this).add(value);
+            i = -i - 1;
+            if (cardinality == values.length)
+                values = Arrays.copyOf(values, Math.min(cardinality * 2, ARRAY_LIMIT));
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[cardinality];
+            int count = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i]))
+                        result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (!(other instanceof ArrayContainer))
+                return other.or(this);
+            ArrayContainer array = (ArrayContainer) other;
+            char[] result = new char[cardinality + array.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < array.cardinality) {
+                if (j >= array.cardinality || i < cardinality && values[i] < array.values[j]) {
+                    result[count++] = values[i++];
+                } else if (i >= cardinality || values[i] > array.values[j]) {
+                    result[count++] = array.values[j++];
+                } else {
+                    result[count++] = values[i++];
+                    j++;
+                }
+            }
+            ArrayContainer union = new ArrayContainer(result, count);
+            return count > ARRAY_LIMIT ? new BitmapContainer(union) : union;
+        }
+
+        @Override
+        int copyTo(int high, int[] ids, int position) {
+            for (int i = 0; i < cardinality; i++)
+                ids[position++] = high | values[i];
+            return position;
+        }
+    }
+
+    /**
+     * A dense container: one bit per possible value.
+     */
+    private static class BitmapContainer extends Container {
+        private final long[] words; // Bits of the values
+        private int cardinality; // Number of values
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        BitmapContainer(ArrayContainer array) {
+            this(new long[1024], 0);
+            for (int i = 0; i < array.cardinality; i++)
+                add(array.values[i]);
+        }
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer)
+                return other.and(this);
+            long[] result = new long[1024];
+            int count = 0;
+            for (int i = 0; i < result.length; i++) {
+                result[i] = words[i] & ((BitmapContainer) other).words[i];
+                count += Long.bitCount(result[i]);
+            }
+            return compact(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] result = words.clone();
+            int count = cardinality;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    char value = array.values[i];
+                    if ((result[value >>> 6] & (1L << value)) == 0) {
+                        result[value >>> 6] |= 1L << value;
+                        count++;
+                    }
+                }
+            } else {
+                count = 0;
+                for (int i = 0; i < result.length; i++) {
+                    result[i] |= ((BitmapContainer) other).words[i];
+                    count += Long.bitCount(result[i]);
+                }
+            }
+            return new BitmapContainer(result, count);
+        }
+
+        @Override
+        int copyTo(int high, int[] ids, int position) {
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    ids[position++] = high | (i << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return position;
+        }
+
+        /**
+         * Stores the result of an intersection as an array container when it is sparse.
+         */
+        private static Container compact(long[] words, int cardinality) {
+            if (cardinality > ARRAY_LIMIT)
+                return new BitmapContainer(words, cardinality);
+            char[] values = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+    }
+}
@@ -1,27 +1,42 @@
 package newfacts;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
-
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 
 /**
  * A class representing a list of facts and providing operations to manage and
  * search the facts.
+ * The list is safe to use from several threads. Facts are only ever appended:
+ * reading facts and scanning searches take no lock and run while facts are added,
+ * seeing the facts added before they started. Appends and the search indexes are
+ * guarded by a lock. The list is not observable itself; use an ObservableFactList
+ * to show it in JavaFX.
  */
 public class FactList {
-	private ObservableList<Fact> factList;
+	private final FactStore factList = new FactStore(); // The facts, readable without locking
+	private final StampedLock lock = new StampedLock(); // Serializes appends, guards the indexes
+	private final List<Consumer<List<Fact>>> listeners = new CopyOnWriteArrayList<>(); // Notified of appends
+	private volatile TokenIndex tokenIndex; // Word index of the facts, null until enabled
+	private volatile TrigramIndex trigramIndex; // Substring index of the facts, null until enabled
+	private final BitmapIndex bitmapIndex = new BitmapIndex(); // Facts of each type and author
+	private ForkJoinPool searchPool = ForkJoinPool.commonPool(); // Pool used by parallel searches
+	private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD; // Smallest list searched in parallel
+
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 100_000;
 
 	/**
-	 * Constructs a new FactList instance. Initializes the fact list as an
-	 * observable array list and the random generator.
+	 * Constructs a new, empty FactList instance.
 	 */
 	public FactList() {
-		this.factList = FXCollections.observableArrayList();
+		super();
 	}
 
 	/**
@@ -30,7 +45,80 @@ public class FactList {
 	 * @param temp The fact to be added to the list.
 	 */
 	public void add(Fact temp) {
-		factList.add(temp);
+		long stamp = lock.writeLock();
+		try {
+			factList.add(temp);
+			added(factList.size() - 1);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Enables the search indexes of this list. The facts already in the list are
+	 * indexed now, without holding the lock, so facts can be added and searched
+	 * meanwhile; facts added later are indexed as they are added. Searches use the
+	 * indexes once they are complete.
+	 */
+	public void enableIndex() {
+		if (tokenIndex != null)
+			return;
+		TokenIndex tokens = new TokenIndex();
+		TrigramIndex trigrams = new TrigramIndex();
+		Fact[] snapshot = factList.snapshot();
+		for (int i = 0; i < snapshot.length; i++) {
+			tokens.add(i, snapshot[i]);
+			trigrams.add(i, snapshot[i]);
+		}
+		long stamp = lock.writeLock();
+		try {
+			if (tokenIndex != null)
+				return;
+			for (int i = snapshot.length; i < factList.size(); i++) { // Facts added while indexing
+				tokens.add(i, factList.get(i));
+				trigrams.add(i, factList.get(i));
+			}
+			trigramIndex = trigrams;
+			tokenIndex = tokens;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Registers a listener notified of the facts appended to the list, in order.
+	 * The listener first receives the facts already in the list, if any, and then
+	 * every later append, on the thread adding the facts.
+	 * 
+	 * @param listener Receives the appended facts.
+	 */
+	public void addListener(Consumer<List<Fact>> listener) {
+		long stamp = lock.writeLock();
+		try {
+			listeners.add(listener);
+			if (factList.size() > 0)
+				listener.accept(Arrays.asList(factList.snapshot()));
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Removes a listener registered with {@link #addListener(Consumer)}.
+	 * 
+	 * @param listener The listener to be removed.
+	 */
+	public void removeListener(Consumer<List<Fact>> listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Checks whether the search index of this list is enabled.
+	 * 
+	 * @return True if the list is indexed.
+	 */
+	public boolean isIndexed() {
+		return tokenIndex != null;
 	}
 
 	/**
@@ -46,13 +134,10 @@ public class FactList {
 	 * Retrieves the fact at the specified index in the fact list.
 	 * 
 	 * @param i The index of the fact to retrieve.
-	 * @return The fact at the specified index.
+	 * @return The fact at the specified index, or null if the index is out of range.
 	 */
 	public Fact get(int i) {
-		//System.out.println("This is i: " + i +"->" + this.factList.size());
-		if (factList.isEmpty() || i < 0 || i > factList.size())
-			return null;
-		return factList.get(i);
+		return factList.get(i); // Null unless 0 <= i < size
 	}
 
 	/**
@@ -63,18 +148,93 @@ public class FactList {
 	 * @return A list of facts that match the search term.
 	 */
 	public List<Fact> searchAll(String searchTerm) {
+		return search(searchTerm, FactSearchMode.ALL);
+	}
+
+	/**
+	 * Searches for facts whose field selected by the search mode contains the given
+	 * search term, ignoring case. When the list is indexed, only the facts sharing all
+	 * trigrams of the term with the field are checked, which gives the same results
+	 * as scanning the whole list. Terms shorter than a trigram are always scanned.
+	 * 
+	 * @param searchTerm The search term to match against fact attributes.
+	 * @param mode       The field to search, or ALL for any field.
+	 * @return A list of facts that match the search term, or null if none match.
+	 */
+	public List<Fact> search(String searchTerm, FactSearchMode mode) {
 		final String searchText = searchTerm.toLowerCase();
-		List<Fact> tempList = new ArrayList<>();
-		factList.forEach(e -> {
-			if (e.getAuthor().toLowerCase().contains(searchText))
-				tempList.add(e);
-			else if (e.getText().toLowerCase().contains(searchText))
-				tempList.add(e);
-			else if (e.getType().toLowerCase().contains(searchText))
-				tempList.add(e);
-		});
+		if (trigramIndex != null && searchText.length() >= TrigramIndex.GRAM)
+			return query(searchTerm, mode).list();
+		return search(containsPredicate(searchText, mode));
+	}
 
-		return tempList.size() > 0 ? tempList : null;
+	/**
+	 * Creates a lazy search for facts whose field selected by the search mode contains
+	 * the given search term, ignoring case. Unlike {@link #search(String, FactSearchMode)},
+	 * no match list is built: the result can be counted, paged or sampled directly.
+	 * 
+	 * @param searchTerm The search term to match against fact attributes.
+	 * @param mode       The field to search, or ALL for any field.
+	 * @return The result of the search.
+	 */
+	public FactSearchResult query(String searchTerm, FactSearchMode mode) {
+		final String searchText = searchTerm.toLowerCase();
+		Predicate<Fact> predicate = containsPredicate(searchText, mode);
+		if (trigramIndex != null && searchText.length() >= TrigramIndex.GRAM) {
+			long stamp = lock.readLock();
+			try {
+				return new FactSearchResult(factList::get, factList.size(), candidates(searchText, mode), predicate);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		Fact[] snapshot = factList.snapshot();
+		return new FactSearchResult(i -> snapshot[i], snapshot.length, null, predicate);
+	}
+
+	/**
+	 * Runs a compound query. The facts matching the type and author conditions are
+	 * found by intersecting the bitmaps of the list, and narrowed further by the
+	 * trigram index for the text condition when the list is indexed; only the
+	 * remaining facts are compared with the text term.
+	 * 
+	 * @param query The conditions the facts must satisfy.
+	 * @return The result of the query.
+	 */
+	public FactSearchResult query(FactQuery query) {
+		FactBitmap ids;
+		int[] candidates;
+		long stamp = lock.readLock();
+		try {
+			ids = bitmapIndex.select(query);
+			candidates = ids == null ? null : ids.toArray();
+			String textTerm = query.getTextTerm();
+			if (trigramIndex != null && textTerm != null && textTerm.length() >= TrigramIndex.GRAM) {
+				int[] textIds = trigramIndex.candidates(textTerm, FactSearchMode.TEXT);
+				candidates = candidates == null ? textIds : PostingList.intersect(candidates, textIds);
+			}
+		} finally {
+			lock.unlockRead(stamp);
+		}
+		if (candidates != null)
+			return new FactSearchResult(factList::get, factList.size(), candidates,
+					ids == null ? query.predicate() : query.textPredicate());
+		Fact[] snapshot = factList.snapshot();
+		return new FactSearchResult(i -> snapshot[i], snapshot.length, null, query.predicate());
+	}
+
+	/**
+	 * Creates the condition of a contains search.
+	 * 
+	 * @param searchText The lower-cased search term.
+	 * @param mode       The field to search, or ALL for any field.
+	 * @return The predicate matching facts whose field contains the term.
+	 */
+	private static Predicate<Fact> containsPredicate(String searchText, FactSearchMode mode) {
+		if (mode != FactSearchMode.ALL)
+			return e -> key(e, mode).contains(searchText);
+		return e -> e.getAuthorKey().contains(searchText) || e.getTextKey().contains(searchText)
+				|| e.getTypeKey().contains(searchText);
 	}
 
 	/**
@@ -83,15 +243,143 @@ public class FactList {
 	 * search is pushed to the user of this class.This is possible due the the use
 	 * predicate, since this function receive the condition code instead of a text
 	 * to search.
+	 * The search runs over a snapshot of the list, so facts added meanwhile are not
+	 * seen. Lists of at least the parallel threshold are split across the search pool;
+	 * the matches are always returned in list order.
 	 * 
 	 * @param predicate The predicate used to filter facts.
 	 * @return A list of facts that match the predicate.
 	 */
 	public List<Fact> search(Predicate<Fact> predicate) {
-		List<Fact> temp = factList.stream().filter(predicate).collect(Collectors.toList());
+		Fact[] snapshot = factList.snapshot();
+		List<Fact> temp;
+		if (snapshot.length >= parallelThreshold && searchPool.getParallelism() > 1) {
+			int leafSize = Math.max(1, snapshot.length / (searchPool.getParallelism() * 4));
+			temp = searchPool.invoke(new ParallelFactSearch(snapshot, 0, snapshot.length, leafSize, predicate));
+		} else {
+			temp = ParallelFactSearch.filter(snapshot, 0, snapshot.length, predicate);
+		}
 		return temp.size() > 0 ? temp : null;
 	}
 
+	/**
+	 * Sets the pool used by parallel searches. The common pool is used by default.
+	 * 
+	 * @param pool The fork-join pool for searches.
+	 */
+	public void setSearchPool(ForkJoinPool pool) {
+		this.searchPool = pool;
+	}
+
+	/**
+	 * Sets the smallest list size searched in parallel.
+	 * 
+	 * @param threshold The number of facts from which searches run in parallel.
+	 */
+	public void setParallelThreshold(int threshold) {
+		this.parallelThreshold = threshold;
+	}
+
+	/**
+	 * Searches for facts containing the given word in the field selected by the
+	 * search mode. A single word matches whole words only, and is found through the
+	 * word index when the list is indexed. Other terms, for example with spaces or
+	 * punctuation, fall back to a scan for facts whose field contains the term.
+	 * 
+	 * @param term The word to search for, case-insensitive.
+	 * @param mode The field to search, or ALL for any field.
+	 * @return A list of facts that match the term, or null if none match.
+	 */
+	public List<Fact> searchTerm(String term, FactSearchMode mode) {
+		final String word = TokenIndex.asWord(term);
+		if (word == null)
+			return search(term, mode);
+		TokenIndex index = tokenIndex;
+		if (index == null) {
+			if (mode == FactSearchMode.ALL)
+				return search(e -> TokenIndex.containsWord(e.getAuthorKey(), word)
+						|| TokenIndex.containsWord(e.getTextKey(), word) || TokenIndex.containsWord(e.getTypeKey(), word));
+			return search(e -> TokenIndex.containsWord(key(e, mode), word));
+		}
+		int[] ids;
+		long stamp = lock.readLock();
+		try {
+			ids = index.lookup(word, mode);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+		List<Fact> tempList = new ArrayList<>(ids.length);
+		for (int id : ids)
+			tempList.add(factList.get(id));
+		return tempList.size() > 0 ? tempList : null;
+	}
+
+	/**
+	 * Finds the facts sharing all trigrams of the search term with the searched fields.
+	 * The candidates still have to be checked against the term.
+	 * 
+	 * @param searchText The lower-cased search term, at least a trigram long.
+	 * @param mode       The field to search, or ALL for any field.
+	 * @return The sorted ids of the candidate facts.
+	 */
+	private int[] candidates(String searchText, FactSearchMode mode) {
+		if (mode != FactSearchMode.ALL)
+			return trigramIndex.candidates(searchText, mode);
+		int[] ids = PostingList.union(trigramIndex.candidates(searchText, FactSearchMode.AUTHOR),
+				trigramIndex.candidates(searchText, FactSearchMode.TEXT));
+		return PostingList.union(ids, trigramIndex.candidates(searchText, FactSearchMode.TYPE));
+	}
+
+	/**
+	 * Retrieves the lower-cased field of a fact selected by a search mode.
+	 * 
+	 * @param fact The fact.
+	 * @param mode The search mode, other than ALL.
+	 * @return The cached lower-cased author, text or type of the fact.
+	 */
+	static String key(Fact fact, FactSearchMode mode) {
+		if (mode == FactSearchMode.AUTHOR)
+			return fact.getAuthorKey();
+		if (mode == FactSearchMode.TEXT)
+			return fact.getTextKey();
+		return fact.getTypeKey();
+	}
+
+	/**
+	 * Indexes the facts appended from the given position, and notifies the listeners.
+	 * Called with the write lock held.
+	 * 
+	 * @param start The position of the first appended fact.
+	 */
+	private void added(int start) {
+		indexFrom(start);
+		if (!listeners.isEmpty() && start < factList.size()) {
+			List<Fact> facts = new ArrayList<>(factList.size() - start);
+			for (int i = start; i < factList.size(); i++)
+				facts.add(factList.get(i));
+			for (Consumer<List<Fact>> listener : listeners)
+				listener.accept(facts);
+		}
+	}
+
+	/**
+	 * Adds the facts from the given position to the end of the list to the indexes.
+	 * The type and author bitmaps are always kept; the other indexes once enabled.
+	 * Called with the write lock held.
+	 * 
+	 * @param start The position of the first fact to be indexed.
+	 */
+	private void indexFrom(int start) {
+		for (int i = start; i < factList.size(); i++)
+			bitmapIndex.add(i, factList.get(i));
+		if (tokenIndex == null)
+			return;
+		for (int i = start; i < factList.size(); i++) {
+			tokenIndex.add(i, factList.get(i));
+			trigramIndex.add(i, factList.get(i));
+		}
+	}
+
 	/**
 	 * Retrieves a random fact from the fact list.
 	 * 
@@ -100,7 +388,7 @@ public class FactList {
 	public Fact getRandom() {
 		if (factList.size() <= 0)
 			return null;
-		int index = new Random().nextInt(factList.size());
+		int index = ThreadLocalRandom.current().nextInt(factList.size());
 		Fact fact = factList.get(index);
 
 		return fact;
@@ -112,6 +400,22 @@ public class FactList {
 	 * @param newList The fact list containing facts to be added.
 	 */
 	public void addAll(FactList newList) {
-		factList.addAll(newList.factList);
+		addAll(Arrays.asList(newList.factList.snapshot()));
+	}
+
+	/**
+	 * Adds all given facts to this fact list as one change.
+	 * 
+	 * @param facts The facts to be added to the list.
+	 */
+	public void addAll(Collection<Fact> facts) {
+		long stamp = lock.writeLock();
+		try {
+			int start = factList.size();
+			factList.addAll(facts);
+			added(start);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
 	}
 }
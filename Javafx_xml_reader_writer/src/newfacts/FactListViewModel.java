@@ -1,12 +1,18 @@
 package newfacts;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Random;
-import java.util.function.Predicate;
-
-import org.w3c.dom.Element;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
 
+import javafx.application.Platform;
 import javafx.beans.property.SimpleObjectProperty;
 
 /**
@@ -18,15 +24,52 @@ import javafx.beans.property.SimpleObjectProperty;
 public class FactListViewModel {
 	private final static String INPUT_FILE = "data/facts.xml";
     private FactList factList;
+    private FactSampler sampler; // Shuffled order of the facts shown by loadRandomFact
+    private FactReloader reloader; // Keeps the facts of the file loaded by loadFacts up to date
+    private FactList indexing; // List whose search index is built in the background
     private SimpleObjectProperty<String> factProperty;
+    private final FactPersistenceService persistence; // Single writer of the fact file
+    private final Executor uiExecutor; // Runs fact list updates of background saves
+    private final LongSupplier sizeGauge = () -> factList.getSize(); // Registered until close
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+    private static final MetricsRegistry.Histogram SAVE_VALIDATE = METRICS.histogram("save.validate.nanos");
+    private static final MetricsRegistry.Histogram SAVE_COMMIT = METRICS.histogram("save.commit.nanos");
+    private static final MetricsRegistry.Histogram SAVE_ADD = METRICS.histogram("save.add.nanos");
+    private static final MetricsRegistry.Histogram SAVE_TOTAL = METRICS.histogram("save.total.nanos");
+    private static final MetricsRegistry.Counter SAVE_ERRORS = METRICS.counter("save.errors");
 
     /**
      * Constructs a new FactListViewModel instance.
      * Initializes the fact list and fact property.
      */
     public FactListViewModel() {
-        factList = new FactList();
+        this(Platform::runLater);
+    }
+
+    /**
+     * Constructs a new FactListViewModel instance whose background saves update the
+     * fact list through the given executor instead of the JavaFX application thread.
+     *
+     * @param uiExecutor The executor running fact list updates of background saves.
+     */
+    public FactListViewModel(Executor uiExecutor) {
+        this(INPUT_FILE, uiExecutor);
+    }
+
+    /**
+     * Constructs a new FactListViewModel instance saving new facts to the given file
+     * instead of "data/facts.xml".
+     *
+     * @param inputFile  The XML file new facts are saved to.
+     * @param uiExecutor The executor running fact list updates of background saves.
+     */
+    public FactListViewModel(String inputFile, Executor uiExecutor) {
+        setFactList(new FactList());
         factProperty = new SimpleObjectProperty<>();
+        this.uiExecutor = uiExecutor;
+        persistence = FactPersistenceService.forFile(inputFile);
+        METRICS.gauge("factlist.size", sizeGauge);
     }
 
     /**
@@ -44,21 +87,59 @@ public class FactListViewModel {
 
     /**
      * Loads facts from an XML file specified by the given path.
-     * Replaces the existing fact list with the loaded facts from the file.
+     * Replaces the existing fact list with the loaded facts from the file. When the same
+     * file is loaded again, only the facts appended to it since are read and added to the
+     * current list, unless the file changed in place and has to be loaded again as a whole.
+     * The search index of a new list is built in the background on the first substring search.
      *
      * @param path The path to the XML file containing facts.
      */
     public void loadFacts(String path) {
-        Parser parser = new Parser(path);
-        factList = parser.getFactList();
+        if (reloader == null || !reloader.getFileName().equals(path))
+            reloader = new FactReloader(path);
+        FactList loaded = reloader.reload();
+        if (loaded != factList)
+            setFactList(loaded);
+    }
+
+    /**
+     * Creates a task loading facts from an XML file in the background.
+     * The existing fact list is replaced by an empty one, which receives the loaded
+     * facts chunk by chunk on the JavaFX application thread. A random fact is shown
+     * as soon as the first chunk arrives. The list is not indexed while it is loaded;
+     * its search index is built in the background on the first substring search.
+     *
+     * @param path The path to the XML file containing facts.
+     * @return The load task, to be run on a background thread.
+     */
+    public FactLoadTask loadFactsAsync(String path) {
+        FactList target = new FactList();
+        setFactList(target);
+        return new FactLoadTask(path, chunk -> {
+            boolean first = target.getSize() == 0;
+            target.addAll(chunk);
+            if (first && factList == target)
+                loadRandomFact();
+        });
+    }
+
+    /**
+     * Replaces the fact list, and starts a new shuffled order over it.
+     *
+     * @param list The new fact list.
+     */
+    private void setFactList(FactList list) {
+        factList = list;
+        sampler = new FactSampler(list);
     }
 
     /**
      * Loads a random fact from the fact list and sets it as the current fact property.
+     * Facts are shown in a shuffled order, so no fact repeats until all were shown.
      * If the fact list is empty, sets a message indicating that the list is empty.
      */
     public void loadRandomFact() {
-        Fact randFact = factList.getRandom();
+        Fact randFact = sampler.nextShuffled();
         if (randFact == null) {
             factProperty.set("Fact list is empty.");
             return;
@@ -68,7 +149,11 @@ public class FactListViewModel {
 
     /**
      * Saves a new fact with the specified author, text, and type to an XML file.
-     * The XML file location is predefined as "data/facts.xml".
+     * The XML file location is predefined as "data/facts.xml", unless another file
+     * was given to the constructor.
+     * The fact is committed by the persistence service of the file, and then added
+     * to the fact list directly instead of reloading the file. The time of each phase
+     * (validation, commit to the file, adding to the list) is recorded in the metrics.
      *
      * @param author The author of the new fact.
      * @param text   The text/content of the new fact.
@@ -76,23 +161,101 @@ public class FactListViewModel {
      * @return 
      */
     public NewFactStatus saveNewFact(String author, String text, String type) {
+        final long start = System.nanoTime();
     	NewFactStatus status = validNewData(author, text, type);
+    	SAVE_VALIDATE.recordSince(start);
     	if( status != NewFactStatus.VALID) return status; 
     	
-        XMLWriter writer = new XMLWriter(INPUT_FILE);
-        
-        List<String> tags = Arrays.asList(XMLNode.FACT_AUTHOR.getNodeName(),
-                XMLNode.FACT_TEXT.getNodeName(), XMLNode.FACT_TYPE.getNodeName());
-        List<String> values = Arrays.asList(author, text, type);
-
-        Element parent = writer.createElement(XMLNode.FACT.getNodeName());
-        writer.addChildern(tags, values, parent);
-        writer.addToRootNode(parent);
-        writer.saveChanges();
-        loadFacts(INPUT_FILE);
+        Fact fact = new Fact(author, type, text);
+        long phase = System.nanoTime();
+        try {
+            persistence.append(Collections.singletonList(fact)).join();
+        } catch (CompletionException e) {
+            SAVE_ERRORS.increment();
+            return NewFactStatus.UNKNOWN_ERROR;
+        }
+        SAVE_COMMIT.recordSince(phase);
+        phase = System.nanoTime();
+        factList.add(fact);
+        SAVE_ADD.recordSince(phase);
+        SAVE_TOTAL.recordSince(start);
         return NewFactStatus.SAVED;
     }
 
+    /**
+     * Saves a new fact in the background, so the calling thread never waits for file I/O.
+     * The data is validated right away; valid facts are queued for the writer thread of
+     * the persistence service, which commits every fact queued by then at once. The fact
+     * is added to the fact list on the UI executor before the returned future completes.
+     *
+     * @param author The author of the new fact.
+     * @param text   The text/content of the new fact.
+     * @param type   The type/category of the new fact.
+     * @return A future completed with the status of the save.
+     */
+    public CompletableFuture<NewFactStatus> saveNewFactAsync(String author, String text, String type) {
+        NewFactStatus status = validNewData(author, text, type);
+        if (status != NewFactStatus.VALID)
+            return CompletableFuture.completedFuture(status);
+
+        Fact fact = new Fact(author, type, text);
+        CompletableFuture<NewFactStatus> saved = new CompletableFuture<>();
+        persistence.append(Collections.singletonList(fact)).whenComplete((done, error) -> uiExecutor.execute(() -> {
+            if (error == null)
+                factList.add(fact);
+            saved.complete(error == null ? NewFactStatus.SAVED : NewFactStatus.UNKNOWN_ERROR);
+        }));
+        return saved;
+    }
+
+    /**
+     * Waits for the queued background saves to be written, and removes the fact list
+     * size gauge of this view model from the metrics.
+     */
+    public void close() {
+        METRICS.removeGauge("factlist.size", sizeGauge);
+        try {
+            persistence.flush().get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Saves a batch of new facts to the XML file in one commit.
+     * Every fact is validated with the same rules as {@link #saveNewFact}; only the valid
+     * ones are written, and they are added to the fact list in a single change.
+     *
+     * @param facts The new facts to be saved.
+     * @return The status of each fact, in the iteration order of the given collection.
+     */
+    public List<NewFactStatus> saveNewFacts(Collection<Fact> facts) {
+        List<NewFactStatus> statuses = new ArrayList<>(facts.size());
+        List<Fact> valid = new ArrayList<>(facts.size());
+        for (Fact fact : facts) {
+            NewFactStatus status = fact == null ? NewFactStatus.AUTHOR_INVALID
+                    : validNewData(fact.getAuthor(), fact.getType(), fact.getText());
+            if (status == NewFactStatus.VALID) {
+                valid.add(fact);
+                status = NewFactStatus.SAVED;
+            }
+            statuses.add(status);
+        }
+        if (valid.isEmpty())
+            return statuses;
+
+        try {
+            persistence.append(valid).join();
+        } catch (CompletionException e) {
+            statuses.replaceAll(s -> s == NewFactStatus.SAVED ? NewFactStatus.UNKNOWN_ERROR : s);
+            return statuses;
+        }
+        factList.addAll(valid);
+        return statuses;
+    }
+
 	private NewFactStatus validNewData(String author, String type, String text) {
 		if (author == null || author.isBlank()) {
             return NewFactStatus.AUTHOR_INVALID;
@@ -108,33 +271,28 @@ public class FactListViewModel {
 
     /**
      * Searches for a fact based on the given search string and search mode.
-     * Sets the fact property to the found fact or a message if no matching fact is found.
+     * Sets the fact property to a randomly sampled match, or a message if no matching fact is found.
+     * The latency and the number of matches are recorded in the metrics of the search mode.
+     * The first substring search of a list that is not indexed scans it, and starts building
+     * its search index in the background, off the JavaFX application thread.
      *
      * @param searchString The search string to match against fact attributes.
      * @param searchMode   The mode specifying which attribute to search (Author, Text, Type, or All).
      */
     public void searchFact(String searchString, FactSearchMode searchMode) {
-        String searchLower = searchString.toLowerCase();
-        Predicate<Fact> predicate = null;
-        List<Fact> list = null;
-        if (searchMode == FactSearchMode.ALL) {
-            list = factList.searchAll(searchString);
-        } else {
-            if (searchMode == FactSearchMode.TEXT) {
-                predicate = fact -> fact.getText().toLowerCase().contains(searchLower);
-            } else if (searchMode == FactSearchMode.TYPE) {
-                predicate = fact -> fact.getType().toLowerCase().contains(searchLower);
-            } else if (searchMode == FactSearchMode.AUTHOR) {
-                predicate = fact -> fact.getAuthor().toLowerCase().contains(searchLower);
-            }
-            list = this.factList.search(predicate);
+        final long start = System.nanoTime();
+        if (!factList.isIndexed() && indexing != factList && searchString.length() >= TrigramIndex.GRAM) {
+            indexing = factList;
+            CompletableFuture.runAsync(indexing::enableIndex);
         }
-        if (list == null || list.isEmpty()) {
+        int[] matches = { 0 };
+        Fact foundFact = factList.query(searchString, searchMode).sample(count -> matches[0] = count);
+        METRICS.histogram("search." + searchMode + ".nanos").recordSince(start);
+        METRICS.histogram("search." + searchMode + ".matches").record(matches[0]);
+        if (foundFact == null) {
             factProperty.set("No results.");
             return;
         }
-        final int index = new Random().nextInt(list.size());
-        Fact foundFact = list.get(index);
         factProperty.set(foundFact.toString());
     }
 
@@ -0,0 +1,169 @@
+package newfacts;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+/**
+ * A background task loading the facts of an XML file with the StreamingParser.
+ * Parsed facts are handed over on the JavaFX application thread in chunks, so the
+ * first facts can be shown while the rest of the file is still being read.
+ * The progress of the task is the number of bytes read from the file. Facts from the
+ * write-ahead log of the file are handed over last; the log is read when the task is
+ * created, as facts saved after that are added to the list by the save itself. When
+ * the binary snapshot of the file is up to date, the facts are taken from it instead
+ * of parsing, and a file that was parsed completely gets a new snapshot. A file that
+ * cannot be parsed fails the task.
+ */
+public class FactLoadTask extends Task<Integer> {
+    private static final int MAX_CHUNK = 4096; // Largest number of facts handed over at once
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+    private static final MetricsRegistry.Histogram LOAD_TIME = METRICS.histogram("loader.load.nanos");
+    private static final MetricsRegistry.Histogram THROUGHPUT = METRICS.histogram("loader.bytes_per_second");
+    private static final MetricsRegistry.Counter FACTS = METRICS.counter("loader.facts");
+    private static final MetricsRegistry.Counter SNAPSHOT_HITS = METRICS.counter("loader.snapshot.hits");
+
+    private final String filePath; // Path of the XML file
+    private final Consumer<List<Fact>> consumer; // Receives the chunks on the application thread
+    private final List<Fact> logged; // Facts of the write-ahead log when the task was created
+
+    /**
+     * Constructs a task loading the facts of the given file, and reads the facts of its
+     * write-ahead log, which is small.
+     *
+     * @param filePath The path to the XML file containing facts.
+     * @param consumer Receives each chunk of parsed facts, on the JavaFX application thread.
+     */
+    public FactLoadTask(String filePath, Consumer<List<Fact>> consumer) {
+        this.filePath = filePath;
+        this.consumer = consumer;
+        this.logged = FactWriteAheadLog.readLogged(filePath);
+    }
+
+    /**
+     * Parses the file and posts the facts in chunks. The first chunk holds a single
+     * fact, and every chunk after it is twice as large, up to {@link #MAX_CHUNK}.
+     *
+     * @return The number of facts loaded.
+     * @throws IOException If the file cannot be read or parsed.
+     */
+    @Override
+    protected Integer call() throws IOException {
+        final long start = System.nanoTime();
+        final long total = new File(filePath).length();
+        int loaded = 0;
+        int chunkSize = 1;
+        List<Fact> chunk = new ArrayList<>();
+        updateMessage("Loading facts...");
+        FactSnapshot snapshot = new FactSnapshot(Paths.get(filePath));
+        List<Fact> cached = snapshot.load();
+        if (cached != null) {
+            for (int i = 0; i < cached.size() && !isCancelled(); i += MAX_CHUNK)
+                loaded += post(new ArrayList<>(cached.subList(i, Math.min(i + MAX_CHUNK, cached.size()))));
+            SNAPSHOT_HITS.increment();
+            return finish(loaded, total, start);
+        }
+        List<Fact> parsed = new ArrayList<>(); // Every parsed fact, for the new snapshot
+        FactSnapshot.Stamp stamp = snapshot.stamp(); // Taken before parsing, so changes during the parse are detected
+        try (CountingInputStream input = new CountingInputStream(new FileInputStream(filePath));
+                StreamingParser parser = new StreamingParser(new BufferedInputStream(input))) {
+            while (!isCancelled() && parser.hasNext()) {
+                Fact fact = parser.next();
+                chunk.add(fact);
+                parsed.add(fact);
+                if (chunk.size() >= chunkSize) {
+                    loaded += post(chunk);
+                    chunk = new ArrayList<>();
+                    chunkSize = Math.min(chunkSize * 2, MAX_CHUNK);
+                    updateProgress(input.count, total);
+                    updateMessage(String.format("Loading facts... %d loaded (%d%%)", loaded,
+                            total > 0 ? input.count * 100 / total : 100));
+                }
+            }
+            loaded += post(chunk);
+            if (parser.hasFailed())
+                throw new IOException("Cannot parse " + filePath); // The facts posted so far are incomplete
+        }
+        if (!isCancelled())
+            snapshot.save(stamp, parsed);
+        return finish(loaded, total, start);
+    }
+
+    /**
+     * Posts the facts of the write-ahead log and reports the end of the task, also in
+     * the metrics.
+     *
+     * @param loaded The number of facts loaded from the file.
+     * @param total  The size of the file.
+     * @param start  The start of the task, from System.nanoTime().
+     * @return The number of facts loaded in total.
+     */
+    private int finish(int loaded, long total, long start) {
+        if (!isCancelled())
+            loaded += post(logged); // Facts logged since the last compaction
+        long nanos = System.nanoTime() - start;
+        LOAD_TIME.record(nanos);
+        THROUGHPUT.record(nanos > 0 ? (long) (total * 1e9 / nanos) : 0);
+        FACTS.add(loaded);
+        updateProgress(total, total);
+        updateMessage(String.format("Loaded %d facts.", loaded));
+        return loaded;
+    }
+
+    /**
+     * Hands a chunk of facts to the consumer on the JavaFX application thread.
+     *
+     * @param chunk The facts to be posted; not used by the task afterwards.
+     * @return The number of facts posted.
+     */
+    private int post(List<Fact> chunk) {
+        if (!chunk.isEmpty())
+            Platform.runLater(() -> consumer.accept(chunk));
+        return chunk.size();
+    }
+
+    /**
+     * An input stream counting the bytes read through it.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private volatile long count = 0; // Number of bytes read so far
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0)
+                count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0)
+                count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
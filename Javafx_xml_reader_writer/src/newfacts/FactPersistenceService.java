@@ -0,0 +1,258 @@
+package newfacts;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The FactPersistenceService owns a fact file and applies all changes to it on one
+ * writer thread. Facts queued while a commit is running are committed together in the
+ * next one. A commit only appends the facts to the write-ahead log of the file; once
+ * the log passes the compaction threshold, it is folded into the XML file by writing
+ * a complete new file beside the original and moving it over the original atomically,
+ * so a crash never leaves a truncated file behind. The fold is a task of its own on the
+ * writer thread, after the commits queued by then, so no save waits for it.
+ * Commits hold a lock on a ".lock" file next to the fact file, so writers in other
+ * processes using this service never overwrite each other's facts.
+ */
+public class FactPersistenceService {
+    // One service per fact file, so all writers of this process share its queue
+    private static final Map<Path, FactPersistenceService> SERVICES = new HashMap<>();
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+    private static final MetricsRegistry.Histogram QUEUE_WAIT = METRICS.histogram("save.queue.nanos");
+    private static final MetricsRegistry.Histogram LOG_APPEND = METRICS.histogram("save.log.nanos");
+    private static final MetricsRegistry.Histogram FOLD = METRICS.histogram("save.fold.nanos");
+    private static final MetricsRegistry.Histogram BATCH_SIZE = METRICS.histogram("save.batch.facts");
+    private static final MetricsRegistry.Counter FACTS_WRITTEN = METRICS.counter("save.facts");
+    private static final MetricsRegistry.Counter WRITE_ERRORS = METRICS.counter("save.write.errors");
+
+    private final Path file; // The fact file owned by this service
+    private final Path lockFile; // File locked while a commit runs
+    private final ExecutorService writer; // Single writer thread
+    private final Queue<PendingFacts> queue = new ConcurrentLinkedQueue<>(); // Facts waiting to be committed
+    private final FactWriteAheadLog log; // Write-ahead log of the fact file
+    private volatile long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD; // Log size that triggers folding
+    private boolean foldQueued; // Whether a fold task is queued; only used on the writer thread
+
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Gets the service owning the given fact file, creating it on first use.
+     *
+     * @param filePath The path to the XML file containing facts.
+     * @return The service of the file.
+     */
+    public static synchronized FactPersistenceService forFile(String filePath) {
+        Path path = Paths.get(filePath).toAbsolutePath().normalize();
+        return SERVICES.computeIfAbsent(path, FactPersistenceService::new);
+    }
+
+    /**
+     * Constructs a service for the given fact file.
+     *
+     * @param file The absolute path of the fact file.
+     */
+    private FactPersistenceService(Path file) {
+        this.file = file;
+        this.lockFile = file.resolveSibling(file.getFileName() + ".lock");
+        this.log = new FactWriteAheadLog(file);
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "fact-writer " + file.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues facts to be appended to the file.
+     *
+     * @param facts The facts to be appended, in order.
+     * @return A future completed once the facts are durably in the file, or completed
+     *         exceptionally if the commit failed.
+     */
+    public CompletableFuture<Void> append(List<Fact> facts) {
+        PendingFacts pending = new PendingFacts(new ArrayList<>(facts));
+        queue.add(pending);
+        writer.execute(this::commit);
+        return pending.done;
+    }
+
+    /**
+     * Sets the size of the write-ahead log from which it is folded into the XML file.
+     *
+     * @param bytes The log size in bytes.
+     */
+    public void setCompactionThreshold(long bytes) {
+        this.compactionThreshold = bytes;
+    }
+
+    /**
+     * Folds the write-ahead log into the XML file now, after the facts queued before.
+     *
+     * @return A future completed once the XML file holds all committed facts.
+     */
+    public CompletableFuture<Void> compact() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        writer.execute(() -> {
+            try {
+                foldLocked();
+                done.complete(null);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                done.completeExceptionally(e);
+            }
+        });
+        return done;
+    }
+
+    /**
+     * Gets a future completed once every fact queued before this call is committed.
+     *
+     * @return The future of the queued commits.
+     */
+    public CompletableFuture<Void> flush() {
+        return append(List.of());
+    }
+
+    /**
+     * Commits all queued facts at once. Runs on the writer thread; when several batches
+     * were queued, the first run commits them all and the later runs find the queue empty.
+     */
+    private void commit() {
+        List<PendingFacts> group = new ArrayList<>();
+        for (PendingFacts pending; (pending = queue.poll()) != null;)
+            group.add(pending);
+        if (group.isEmpty())
+            return;
+        long start = System.nanoTime();
+        List<Fact> facts = new ArrayList<>();
+        for (PendingFacts pending : group) {
+            facts.addAll(pending.facts);
+            QUEUE_WAIT.record(start - pending.queued);
+        }
+
+        try {
+            if (!facts.isEmpty()) {
+                write(facts);
+                BATCH_SIZE.record(facts.size());
+                FACTS_WRITTEN.add(facts.size());
+            }
+            for (PendingFacts pending : group)
+                pending.done.complete(null);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            WRITE_ERRORS.increment();
+            for (PendingFacts pending : group)
+                pending.done.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Appends the given facts to the write-ahead log while holding the lock file, and
+     * queues a fold of the log into the XML file once it passes the compaction threshold.
+     *
+     * @param facts The facts to be appended.
+     * @throws IOException If the log cannot be written.
+     */
+    private void write(List<Fact> facts) throws IOException {
+        long size;
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.lock(); // Released when the channel is closed
+            long start = System.nanoTime();
+            log.append(facts);
+            LOG_APPEND.recordSince(start);
+            size = log.size();
+        }
+        if (size >= compactionThreshold && !foldQueued) {
+            foldQueued = true;
+            writer.execute(this::foldInBackground);
+        }
+    }
+
+    /**
+     * Folds the log queued by a commit that passed the compaction threshold. Errors are
+     * printed and counted; the log is kept, and folded by a later commit.
+     */
+    private void foldInBackground() {
+        foldQueued = false;
+        try {
+            foldLocked();
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            WRITE_ERRORS.increment();
+        }
+    }
+
+    /**
+     * Folds the log into the XML file while holding the lock file.
+     *
+     * @throws IOException If the file cannot be read, written or replaced.
+     */
+    private void foldLocked() throws IOException {
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.lock(); // Released when the channel is closed
+            long start = System.nanoTime();
+            fold();
+            FOLD.recordSince(start);
+        }
+    }
+
+    /**
+     * Writes the current file plus the logged facts to a temporary file with the
+     * permissions of the fact file, moves it over the fact file, then deletes the log.
+     * Must be called with the lock file held.
+     * If the process stops before the log is deleted, the log is recognized as folded
+     * when it is read again.
+     *
+     * @throws IOException If the file cannot be read, written or replaced.
+     */
+    private void fold() throws IOException {
+        List<Fact> facts = log.read();
+        if (!facts.isEmpty()) {
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                new XMLWriter(file.toString(), true).writeAppended(facts, temp);
+                PosixFileAttributeView view = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+                if (view != null) // The temporary file is only readable by its owner
+                    Files.setPosixFilePermissions(temp, view.readAttributes().permissions());
+                try {
+                    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        log.delete();
+    }
+
+    /**
+     * Facts queued together, with the future of their commit.
+     */
+    private static class PendingFacts {
+        private final List<Fact> facts;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final long queued = System.nanoTime(); // When the facts were queued
+
+        PendingFacts(List<Fact> facts) {
+            this.facts = facts;
+        }
+    }
+}
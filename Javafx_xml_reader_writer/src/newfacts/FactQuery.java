@@ -0,0 +1,98 @@
+package newfacts;
+
+import java.util.function.Predicate;
+
+/**
+ * A compound fact query combining conditions on several fields, for example type is
+ * "Fallacy" and author contains "glass" and text contains "quality". All conditions
+ * ignore case and must hold together; conditions that are not set match any fact.
+ * Run the query with {@link FactList#query(FactQuery)}.
+ */
+public class FactQuery {
+    private String type; // Lower-cased type, or null
+    private String author; // Lower-cased author, or null
+    private String authorTerm; // Lower-cased term the author contains, or null
+    private String textTerm; // Lower-cased term the text contains, or null
+
+    /**
+     * Requires the type of the facts to equal the given type, ignoring case.
+     *
+     * @param type The type.
+     * @return This query.
+     */
+    public FactQuery typeIs(String type) {
+        this.type = type.toLowerCase();
+        return this;
+    }
+
+    /**
+     * Requires the author of the facts to equal the given author, ignoring case.
+     *
+     * @param author The author.
+     * @return This query.
+     */
+    public FactQuery authorIs(String author) {
+        this.author = author.toLowerCase();
+        return this;
+    }
+
+    /**
+     * Requires the author of the facts to contain the given term, ignoring case.
+     *
+     * @param term The search term.
+     * @return This query.
+     */
+    public FactQuery authorContains(String term) {
+        this.authorTerm = term.toLowerCase();
+        return this;
+    }
+
+    /**
+     * Requires the text of the facts to contain the given term, ignoring case.
+     *
+     * @param term The search term.
+     * @return This query.
+     */
+    public FactQuery textContains(String term) {
+        this.textTerm = term.toLowerCase();
+        return this;
+    }
+
+    String getType() {
+        return type;
+    }
+
+    String getAuthor() {
+        return author;
+    }
+
+    String getAuthorTerm() {
+        return authorTerm;
+    }
+
+    String getTextTerm() {
+        return textTerm;
+    }
+
+    /**
+     * Creates the condition of the whole query.
+     *
+     * @return The predicate matching the facts that satisfy every condition.
+     */
+    Predicate<Fact> predicate() {
+        return e -> (type == null || type.equals(e.getTypeKey()))
+                && (author == null || author.equals(e.getAuthorKey()))
+                && (authorTerm == null || e.getAuthorKey() != null && e.getAuthorKey().contains(authorTerm))
+                && (textTerm == null || e.getTextKey() != null && e.getTextKey().contains(textTerm));
+    }
+
+    /**
+     * Creates the condition on the text only, for facts already known to satisfy the
+     * type and author conditions.
+     *
+     * @return The predicate matching the facts whose text satisfies the query.
+     */
+    Predicate<Fact> textPredicate() {
+        return e -> textTerm == null || e.getTextKey() != null && e.getTextKey().contains(textTerm);
+    }
+}
@@ -0,0 +1,271 @@
+package newfacts;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * The FactReloader class keeps a FactList up to date with a fact file that grows, because
+ * facts are saved by this process or appended by others. New facts are only ever inserted
+ * before the closing tag of the fact list, and the bytes before it are kept as they are,
+ * so a reload parses only the bytes from the former closing tag, and reads the write-ahead
+ * log, which is small. Files whose size and modification time did not change are not read.
+ * <p>
+ * The facts after the parsed XML part of the list (facts of the log, and facts added to
+ * the list by saves) must come first among the new facts; the others are appended to the
+ * list. When the file changed in place (it did not grow, as appends always grow it, the
+ * bytes at its start or before the former closing tag changed, or the new part is not
+ * just facts), or the list does not
+ * match the new facts, the file is loaded again into a new list.
+ */
+public class FactReloader {
+    private static final int CHECK_WINDOW = 4096; // Bytes compared at the start of the file and before the closing tag
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+    private static final MetricsRegistry.Histogram RELOAD_TIME = METRICS.histogram("reload.nanos");
+    private static final MetricsRegistry.Counter UNCHANGED = METRICS.counter("reload.unchanged");
+    private static final MetricsRegistry.Counter INCREMENTAL = METRICS.counter("reload.incremental");
+    private static final MetricsRegistry.Counter FULL = METRICS.counter("reload.full");
+    private static final MetricsRegistry.Counter TAIL_BYTES = METRICS.counter("reload.tail.bytes");
+
+    private final String fileName; // The fact file
+    private final Path file; // Path of the fact file
+    private final Path log; // Path of the write-ahead log of the fact file
+    private FactList factList; // Facts of the file
+    private int parsed; // Number of facts of the list read from the XML file
+    private long contentEnd = -1; // Offset of the closing tag of the fact list, or -1 to load the file again
+    private long headEnd; // End of the bytes at the start of the file covered by the head CRC
+    private long headCrc; // CRC32 of the bytes at the start of the file
+    private long tailCrc; // CRC32 of the bytes before the closing tag
+    private Stamp fileStamp; // Size and modification time of the file when it was read
+    private Stamp logStamp; // Size and modification time of the log when it was read
+
+    /**
+     * Constructs a reloader, and loads the facts of the file.
+     *
+     * @param fileName The name of the XML file containing facts
+     */
+    public FactReloader(String fileName) {
+        this.fileName = fileName;
+        this.file = Paths.get(fileName);
+        this.log = file.resolveSibling(file.getFileName() + FactWriteAheadLog.SUFFIX);
+        load();
+    }
+
+    /**
+     * Gets the name of the fact file.
+     *
+     * @return The name of the XML file containing facts
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Gets the facts of the file, as of the last load or reload.
+     *
+     * @return The fact list
+     */
+    public synchronized FactList getFactList() {
+        return factList;
+    }
+
+    /**
+     * Brings the fact list up to date with the file.
+     *
+     * @return The fact list, which is the same list with the new facts appended, or a new
+     *         list if the file had to be loaded again
+     */
+    public synchronized FactList reload() {
+        final long start = System.nanoTime();
+        try {
+            Stamp fileNow = Stamp.of(file);
+            Stamp logNow = Stamp.of(log);
+            if (fileNow.equals(fileStamp) && logNow.equals(logStamp)) {
+                UNCHANGED.increment();
+                return factList;
+            }
+            Tail tail;
+            if (fileNow.equals(fileStamp))
+                tail = new Tail(new ArrayList<>(), contentEnd, tailCrc);
+            else if (fileStamp == null || fileNow.size <= fileStamp.size)
+                tail = null; // Appends always grow the file, so it changed in place
+            else
+                tail = readTail();
+            if (tail != null && append(tail.facts, FactWriteAheadLog.readLogged(fileName))) {
+                parsed += tail.facts.size();
+                contentEnd = tail.contentEnd;
+                tailCrc = tail.crc;
+                fileStamp = fileNow;
+                logStamp = logNow;
+                INCREMENTAL.increment();
+                return factList;
+            }
+        } catch (IOException e) {
+            e.printStackTrace(); // Load the file again instead
+        } finally {
+            RELOAD_TIME.recordSince(start);
+        }
+        load();
+        return factList;
+    }
+
+    /**
+     * Loads the facts of the file into a new list, and remembers where they end.
+     */
+    private void load() {
+        FULL.increment();
+        Stamp fileNow = Stamp.of(file);
+        Stamp logNow = Stamp.of(log);
+        FactList list = new Parser(fileName, false, false).getFactList();
+        parsed = list.getSize();
+        list.addAll(FactWriteAheadLog.readLogged(fileName));
+        factList = list;
+        fileStamp = fileNow;
+        logStamp = logNow;
+
+        contentEnd = -1;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (Stamp.of(file).equals(fileNow)) { // Else the offsets may not match the parsed file
+                long end = ParallelParser.findRootEnd(channel, 0, channel.size());
+                if (end >= 0) {
+                    headEnd = Math.min(CHECK_WINDOW, end);
+                    headCrc = crc(channel, 0, headEnd);
+                    tailCrc = crc(channel, Math.max(0, end - CHECK_WINDOW), end);
+                    contentEnd = end;
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace(); // The next reload loads the file again
+        }
+    }
+
+    /**
+     * Parses the facts inserted before the closing tag since the file was read, after it grew.
+     *
+     * @return The new facts and the new end of the content, or null if the file changed in place
+     *         or no facts were inserted
+     * @throws IOException If the file cannot be read
+     */
+    private Tail readTail() throws IOException {
+        if (contentEnd < 0)
+            return null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < contentEnd || crc(channel, 0, headEnd) != headCrc
+                    || crc(channel, Math.max(0, contentEnd - CHECK_WINDOW), contentEnd) != tailCrc)
+                return null;
+            long end = ParallelParser.findRootEnd(channel, contentEnd, size);
+            if (end <= contentEnd)
+                return null; // The file grew, but not by facts before the closing tag
+            List<Fact> facts = ParallelParser.parseChunk(
+                    channel.map(FileChannel.MapMode.READ_ONLY, contentEnd, end - contentEnd));
+            if (facts == null)
+                return null;
+            TAIL_BYTES.add(end - contentEnd);
+            return new Tail(facts, end, crc(channel, Math.max(0, end - CHECK_WINDOW), end));
+        }
+    }
+
+    /**
+     * Appends the new facts to the list. The facts of the list after the parsed part must
+     * be the first of the new facts: the facts of the log when it was read, which may since
+     * be folded into the file, and the facts saved by this process.
+     *
+     * @param tail   The facts parsed from the new part of the file
+     * @param logged The facts of the log
+     * @return True if the facts were appended, false if the list does not match them
+     */
+    private boolean append(List<Fact> tail, List<Fact> logged) {
+        List<Fact> facts = new ArrayList<>(tail.size() + logged.size());
+        facts.addAll(tail);
+        facts.addAll(logged);
+        int known = factList.getSize() - parsed;
+        if (known > facts.size())
+            return false; // Facts were removed from the log without being folded
+        for (int i = 0; i < known; i++) {
+            if (!same(factList.get(parsed + i), facts.get(i)))
+                return false;
+        }
+        if (known < facts.size())
+            factList.addAll(facts.subList(known, facts.size()));
+        return true;
+    }
+
+    /**
+     * Compares the fields of two facts.
+     */
+    private static boolean same(Fact a, Fact b) {
+        return a != null && Objects.equals(a.getAuthor(), b.getAuthor()) && Objects.equals(a.getType(), b.getType())
+                && Objects.equals(a.getText(), b.getText());
+    }
+
+    /**
+     * Computes the CRC32 of a range of the file.
+     */
+    private static long crc(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+        while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) >= 0)
+            ;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.flip());
+        return crc.getValue();
+    }
+
+    /**
+     * Facts parsed from the new part of the file, with the new end of the content.
+     */
+    private static class Tail {
+        private final List<Fact> facts;
+        private final long contentEnd;
+        private final long crc; // CRC32 of the bytes before the new end
+
+        Tail(List<Fact> facts, long contentEnd, long crc) {
+            this.facts = facts;
+            this.contentEnd = contentEnd;
+            this.crc = crc;
+        }
+    }
+
+    /**
+     * Size and modification time of a file, or of a missing file.
+     */
+    private static class Stamp {
+        private final long size;
+        private final long modified;
+
+        private Stamp(long size, long modified) {
+            this.size = size;
+            this.modified = modified;
+        }
+
+        static Stamp of(Path path) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                return new Stamp(attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+            } catch (IOException e) {
+                return new Stamp(-1, -1); // Missing
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Stamp && ((Stamp) o).size == size && ((Stamp) o).modified == modified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) * 31 + Long.hashCode(modified);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package newfacts;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Draws random facts from a FactList. Besides uniform draws, it supports draws
+ * weighted by fact type, and shuffled iteration that returns every fact once before
+ * any fact repeats. Every draw takes constant time: shuffled iteration swaps one entry
+ * of a permutation of the fact ids per draw (an incremental Fisher-Yates shuffle),
+ * and weighted draws pick a type and then a fact from the ids of that type.
+ * <p>
+ * Facts added to the list are picked up on the next draw; since facts are only ever
+ * appended, this costs constant time per new fact. The ids of each type are only
+ * collected once a weighted draw is made, and each distinct type is lower-cased once. Random numbers come from
+ * ThreadLocalRandom, and all draws are safe to call from several threads.
+ */
+public class FactSampler {
+    private final FactList list; // The sampled facts
+    private int known = 0; // Number of facts of the list seen by the sampler
+    private int[] order = new int[16]; // Permutation of the fact ids for shuffled iteration
+    private int remaining = 0; // Ids at the start of the permutation not returned in this round
+    private int typed = 0; // Number of facts of the list added to byType
+    private final Map<String, PostingList> byType = new HashMap<>(); // Fact ids of each lower-cased type
+    private final Map<String, String> typeKeys = new HashMap<>(); // Lower-cased key of each type seen
+
+    /**
+     * Constructs a sampler of the given list.
+     *
+     * @param list The facts to draw from.
+     */
+    public FactSampler(FactList list) {
+        this.list = list;
+    }
+
+    /**
+     * Draws a fact uniformly at random.
+     *
+     * @return A random fact, or null if the list is empty.
+     */
+    public Fact next() {
+        int size = list.getSize();
+        return size > 0 ? list.get(ThreadLocalRandom.current().nextInt(size)) : null;
+    }
+
+    /**
+     * Draws the next fact of a random order in which no fact repeats until every fact
+     * has been returned. A new order starts once all facts were returned.
+     *
+     * @return The next fact of the shuffled order, or null if the list is empty.
+     */
+    public synchronized Fact nextShuffled() {
+        sync();
+        if (known == 0)
+            return null;
+        if (remaining == 0)
+            remaining = known; // Start a new round
+        int j = ThreadLocalRandom.current().nextInt(remaining);
+        int id = order[j];
+        order[j] = order[remaining - 1];
+        order[remaining - 1] = id;
+        remaining--;
+        return list.get(id);
+    }
+
+    /**
+     * Draws a fact with a type chosen at random by the given weights, ignoring case,
+     * and then a fact of that type uniformly at random. Types without a weight, or
+     * without facts, are never drawn.
+     *
+     * @param weights The relative weight of each type.
+     * @return A random fact, or null if no weighted type has facts.
+     */
+    public synchronized Fact nextWeighted(Map<String, Double> weights) {
+        syncTypes();
+        PostingList[] types = new PostingList[weights.size()];
+        double[] cumulative = new double[weights.size()];
+        int count = 0;
+        double total = 0;
+        for (Map.Entry<String, Double> entry : weights.entrySet()) {
+            PostingList ids = byType.get(entry.getKey().toLowerCase());
+            if (ids == null || entry.getValue() <= 0)
+                continue;
+            total += entry.getValue();
+            types[count] = ids;
+            cumulative[count++] = total;
+        }
+        if (count == 0)
+            return null;
+        int i = Arrays.binarySearch(cumulative, 0, count, ThreadLocalRandom.current().nextDouble(total));
+        PostingList ids = types[Math.min(i >= 0 ? i + 1 : -i - 1, count - 1)];
+        return list.get(ids.get(ThreadLocalRandom.current().nextInt(ids.size())));
+    }
+
+    /**
+     * Adds the facts appended to the list since the last draw. A new fact joins the
+     * part of the current round that was not returned yet.
+     */
+    private void sync() {
+        int size = list.getSize();
+        if (size > order.length)
+            order = Arrays.copyOf(order, Math.max(size, order.length * 2));
+        for (int id = known; id < size; id++) {
+            order[id] = order[remaining];
+            order[remaining++] = id;
+        }
+        known = size;
+    }
+
+    /**
+     * Adds the facts appended to the list since the last weighted draw to the ids of
+     * their type.
+     */
+    private void syncTypes() {
+        int size = list.getSize();
+        for (int id = typed; id < size; id++) {
+            String type = list.get(id).getType();
+            if (type != null)
+                byType.computeIfAbsent(typeKeys.computeIfAbsent(type, String::toLowerCase), k -> new PostingList()).add(id);
+        }
+        typed = size;
+    }
+}
@@ -0,0 +1,618 @@
+package newfacts;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * The FactScanner class reads facts directly from the UTF-8 bytes of a fact file,
+ * without the SAX machinery. It only knows the elements of XMLNode and reads them the
+ * way the Handler does: field values are the whole text of the field, blank fields are
+ * left unset, and repeated authors and types share one String instance.
+ * <p>
+ * Plain ASCII field values are copied from the buffer into the String at once; entity
+ * references, CDATA sections, line ends to normalize and other characters are decoded
+ * only in the fields that contain them. The scanner accepts a strict subset of XML:
+ * anything else (attributes, unknown elements, a document type declaration, another
+ * encoding, malformed content) stops the scan as unsupported, and the file must then be
+ * parsed by the Parser, which also reports the errors of malformed files.
+ */
+public class FactScanner {
+    // XML declaration with version 1.0 and, if declared, UTF-8 encoding
+    private static final Pattern DECLARATION = Pattern.compile("<\\?xml\\s+version\\s*=\\s*([\"'])1\\.0\\1"
+            + "(\\s+encoding\\s*=\\s*([\"'])(?i:utf-8)\\3)?(\\s+standalone\\s*=\\s*([\"'])(yes|no)\\5)?\\s*\\?>");
+    private static final Unsupported UNSUPPORTED = new Unsupported();
+    private static final XMLNode[] NODES = XMLNode.values();
+    private static final long LOW_BITS = 0x0101010101010101L; // Lowest bit of each byte of a word
+    private static final long HIGH_BITS = 0x8080808080808080L; // Highest bit of each byte of a word
+    private static final boolean[] NAME_BYTES = new boolean[128]; // ASCII bytes allowed in element names
+
+    static {
+        for (int b = 0; b < NAME_BYTES.length; b++)
+            NAME_BYTES[b] = Character.isLetterOrDigit(b) || b == '-' || b == '_' || b == '.' || b == ':';
+    }
+
+    private final ByteBuffer buffer; // Bytes being scanned
+    private final int limit; // End of the bytes
+    private int pos; // Position of the next byte
+    private final Consumer<Fact> sink; // Receives each scanned fact
+    private final StringBuilder text = new StringBuilder(); // Decoded value of a field, reused
+    private final AsciiSequence ascii = new AsciiSequence(); // Plain value of a field, reused
+    private final StringDictionary authors = new StringDictionary(); // Shared author values
+    private final StringDictionary types = new StringDictionary(); // Shared type values
+
+    /**
+     * Constructs a scanner over the remaining bytes of a buffer.
+     *
+     * @param buffer The bytes to scan
+     * @param sink   Receives each scanned fact, in document order
+     */
+    private FactScanner(ByteBuffer buffer, Consumer<Fact> sink) {
+        this.buffer = buffer;
+        this.pos = buffer.position();
+        this.limit = buffer.limit();
+        this.sink = sink;
+    }
+
+    /**
+     * Scans the facts of a file. Facts of the write-ahead log are not included.
+     *
+     * @param fileName The name of the XML file to be scanned
+     * @return The facts of the file in document order, or null if the file is not supported
+     *         by the scanner, in which case it must be parsed by the Parser
+     * @throws IOException If the file cannot be read
+     */
+    public static List<Fact> scan(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                return null;
+            List<Fact> facts = new ArrayList<>();
+            return scanDocument(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), facts::add)
+                    ? facts : null;
+        }
+    }
+
+    /**
+     * Scans the facts of a whole document.
+     *
+     * @param buffer The bytes of the document
+     * @param sink   Receives each scanned fact, in document order
+     * @return True if the document was scanned, false if it is not supported; the sink
+     *         may have received facts of the supported part
+     */
+    public static boolean scanDocument(ByteBuffer buffer, Consumer<Fact> sink) {
+        try {
+            new FactScanner(buffer, sink).document();
+            return true;
+        } catch (Unsupported e) {
+            return false;
+        }
+    }
+
+    /**
+     * Scans the facts of a part of the content of the fact list, which ends with the
+     * bytes, such as a chunk of a ParallelParser.
+     *
+     * @param buffer The bytes of the content
+     * @param sink   Receives each scanned fact, in document order
+     * @return True if the content was scanned, false if it is not supported; the sink
+     *         may have received facts of the supported part
+     */
+    public static boolean scanContent(ByteBuffer buffer, Consumer<Fact> sink) {
+        try {
+            FactScanner scanner = new FactScanner(buffer, sink);
+            if (scanner.content())
+                throw UNSUPPORTED; // The end tag of the fact list is not part of the content
+            return true;
+        } catch (Unsupported e) {
+            return false;
+        }
+    }
+
+    /**
+     * Scans the prolog, the fact list and what follows it.
+     */
+    private void document() throws Unsupported {
+        if (startsWith("\u00ef\u00bb\u00bf")) // UTF-8 byte order mark, as ISO-8859-1 characters
+            pos += 3;
+        if (startsWith("<?xml") && isWhitespace(byteAt(pos + 5))) {
+            int end = indexOf("?>", pos);
+            byte[] declaration = new byte[end + 2 - pos];
+            buffer.get(pos, declaration);
+            if (!DECLARATION.matcher(new String(declaration, StandardCharsets.ISO_8859_1)).matches())
+                throw UNSUPPORTED;
+            pos = end + 2;
+        }
+        misc();
+        int name = pos + 1;
+        int length = startTag();
+        if (node(name, length) != XMLNode.FACT_LIST)
+            throw UNSUPPORTED;
+        if (length >= 0) { // Not an empty fact list
+            if (!content())
+                throw UNSUPPORTED;
+            endTag(name, length);
+        }
+        misc();
+        if (pos != limit)
+            throw UNSUPPORTED;
+    }
+
+    /**
+     * Skips whitespace, comments and processing instructions outside the fact list.
+     */
+    private void misc() throws Unsupported {
+        while (true) {
+            skipWhitespace();
+            if (startsWith("<!--"))
+                comment();
+            else if (startsWith("<?") && !startsWith("<?xml"))
+                pos = indexOf("?>", pos + 2) + 2;
+            else
+                return;
+        }
+    }
+
+    /**
+     * Scans facts up to the end tag of the fact list, or to the end of the bytes.
+     *
+     * @return True at the end tag of the fact list, false at the end of the bytes
+     */
+    private boolean content() throws Unsupported {
+        while (true) {
+            skipWhitespace();
+            if (pos == limit)
+                return false;
+            if (byteAt(pos) != '<')
+                throw UNSUPPORTED; // Text in the fact list
+            if (startsWith("<!--")) {
+                comment();
+            } else if (startsWith("</")) {
+                return true;
+            } else {
+                int name = pos + 1;
+                int length = startTag();
+                if (node(name, length) != XMLNode.FACT)
+                    throw UNSUPPORTED;
+                sink.accept(length < 0 ? new Fact() : fact(name, length));
+            }
+        }
+    }
+
+    /**
+     * Scans the fields of a fact and its end tag.
+     *
+     * @param name   The position of the name of the fact element
+     * @param length The length of the name
+     * @return The scanned fact
+     */
+    private Fact fact(int name, int length) throws Unsupported {
+        Fact fact = new Fact();
+        while (true) {
+            skipWhitespace();
+            if (byteAt(pos) != '<')
+                throw UNSUPPORTED; // Text in the fact
+            if (startsWith("<!--")) {
+                comment();
+            } else if (startsWith("</")) {
+                endTag(name, length);
+                return fact;
+            } else {
+                int field = pos + 1;
+                int fieldLength = startTag();
+                XMLNode node = node(field, fieldLength);
+                if (node == null || node == XMLNode.FACT || node == XMLNode.FACT_LIST)
+                    throw UNSUPPORTED;
+                if (fieldLength >= 0) {
+                    String value = field(node);
+                    endTag(field, fieldLength);
+                    if (value != null)
+                        fact.setFact(node, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans the text of a field up to its end tag.
+     *
+     * @param node The field
+     * @return The value of the field, or null if the field is blank
+     */
+    private String field(XMLNode node) throws Unsupported {
+        int start = pos;
+        while (pos + 8 <= limit && isPlain(buffer.getLong(pos)))
+            pos += 8;
+        for (int b; (b = byteAt(pos)) != '<'; pos++) {
+            if (b < 0x20 ? b != '\t' && b != '\n' : b == '&' || b == ']') { // Not ASCII, or to decode
+                pos = start;
+                return decodeField(node);
+            }
+        }
+        if (!startsWith("</")) {
+            pos = start;
+            return decodeField(node); // A comment or CDATA section in the field
+        }
+        int end = start;
+        while (end < pos && isWhitespace(buffer.get(end)))
+            end++;
+        if (end == pos)
+            return null; // Blank
+        ascii.set(buffer, start, pos - start);
+        if (node == XMLNode.FACT_AUTHOR)
+            return authors.canonical(ascii);
+        if (node == XMLNode.FACT_TYPE)
+            return types.canonical(ascii);
+        return ascii.toString();
+    }
+
+    /**
+     * Decodes the text of a field up to its end tag, with entity and character references,
+     * CDATA sections, comments, line ends and non-ASCII characters.
+     *
+     * @param node The field
+     * @return The value of the field, or null if the field is blank
+     */
+    private String decodeField(XMLNode node) throws Unsupported {
+        text.setLength(0);
+        while (true) {
+            int b = byteAt(pos);
+            if (b == '<') {
+                if (startsWith("</"))
+                    break;
+                if (startsWith("<!--")) {
+                    comment();
+                } else if (startsWith("<![CDATA[")) {
+                    int end = indexOf("]]>", pos + 9);
+                    for (pos += 9; pos < end;)
+                        decodeChar();
+                    pos = end + 3;
+                } else {
+                    throw UNSUPPORTED; // An element in the field
+                }
+            } else if (b == '&') {
+                reference();
+            } else if (b == ']' && startsWith("]]>")) {
+                throw UNSUPPORTED;
+            } else {
+                decodeChar();
+            }
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                if (node == XMLNode.FACT_AUTHOR)
+                    return authors.canonical(text);
+                if (node == XMLNode.FACT_TYPE)
+                    return types.canonical(text);
+                return text.toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes one character of text into the field value, normalizing line ends.
+     */
+    private void decodeChar() throws Unsupported {
+        int b = byteAt(pos);
+        if (b == '\r') {
+            text.append('\n');
+            pos += byteAt(pos + 1) == '\n' ? 2 : 1;
+        } else if (b >= 0) {
+            if (b < 0x20 && b != '\t' && b != '\n')
+                throw UNSUPPORTED;
+            text.append((char) b);
+            pos++;
+        } else {
+            text.appendCodePoint(codePoint());
+        }
+    }
+
+    /**
+     * Decodes an entity or character reference into the field value.
+     */
+    private void reference() throws Unsupported {
+        int end = indexOf(";", pos);
+        if (end - pos > 10)
+            throw UNSUPPORTED;
+        byte[] bytes = new byte[end - pos - 1];
+        buffer.get(pos + 1, bytes);
+        String name = new String(bytes, StandardCharsets.ISO_8859_1);
+        pos = end + 1;
+        switch (name) {
+        case "lt" -> text.append('<');
+        case "gt" -> text.append('>');
+        case "amp" -> text.append('&');
+        case "quot" -> text.append('"');
+        case "apos" -> text.append('\'');
+        default -> {
+            if (!name.startsWith("#"))
+                throw UNSUPPORTED; // Other entities are only declared in a document type declaration
+            int radix = name.startsWith("#x") ? 16 : 10;
+            String digits = name.substring(radix == 16 ? 2 : 1);
+            if (digits.isEmpty() || digits.chars().anyMatch(d -> Character.digit(d, radix) < 0))
+                throw UNSUPPORTED;
+            int c = Integer.parseInt(digits, radix); // At most 8 digits, so it does not overflow
+            if (!isXmlChar(c))
+                throw UNSUPPORTED;
+            text.appendCodePoint(c);
+        }
+        }
+    }
+
+    /**
+     * Decodes a multi-byte UTF-8 character.
+     *
+     * @return The code point of the character
+     */
+    private int codePoint() throws Unsupported {
+        int b = byteAt(pos) & 0xFF;
+        int length = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC2 ? 2 : 0;
+        if (length == 0 || b >= 0xF5)
+            throw UNSUPPORTED;
+        int c = b & (0x7F >> length);
+        for (int i = 1; i < length; i++) {
+            int next = byteAt(pos + i);
+            if ((next & 0xC0) != 0x80)
+                throw UNSUPPORTED;
+            c = c << 6 | next & 0x3F;
+        }
+        if (c < (length == 3 ? 0x800 : 0x10000) && length > 2 || !isXmlChar(c))
+            throw UNSUPPORTED; // Overlong, surrogate, or not allowed in XML
+        pos += length;
+        return c;
+    }
+
+    /**
+     * Skips a comment, checking its characters.
+     */
+    private void comment() throws Unsupported {
+        int end = indexOf("--", pos + 4);
+        if (byteAt(end + 2) != '>')
+            throw UNSUPPORTED; // "--" in a comment
+        for (pos += 4; pos < end;) {
+            int b = byteAt(pos);
+            if (b < 0)
+                codePoint();
+            else if (b < 0x20 && b != '\t' && b != '\n' && b != '\r')
+                throw UNSUPPORTED;
+            else
+                pos++;
+        }
+        pos = end + 3;
+    }
+
+    /**
+     * Scans a start tag without attributes.
+     *
+     * @return The length of the element name, or minus the length of the name minus one
+     *         for an empty element tag
+     */
+    private int startTag() throws Unsupported {
+        if (byteAt(pos) != '<')
+            throw UNSUPPORTED;
+        int name = ++pos;
+        while (isNameByte(byteAt(pos)))
+            pos++;
+        int length = pos - name;
+        if (length == 0)
+            throw UNSUPPORTED;
+        skipWhitespace();
+        if (startsWith("/>")) {
+            pos += 2;
+            return -length - 1;
+        }
+        if (byteAt(pos++) != '>')
+            throw UNSUPPORTED; // Attributes are not supported
+        return length;
+    }
+
+    /**
+     * Scans the end tag of an element, which must repeat the name of its start tag exactly.
+     *
+     * @param name   The position of the name in the start tag
+     * @param length The length of the name
+     */
+    private void endTag(int name, int length) throws Unsupported {
+        if (!startsWith("</"))
+            throw UNSUPPORTED;
+        pos += 2;
+        for (int i = 0; i < length; i++) {
+            if (byteAt(pos++) != byteAt(name + i))
+                throw UNSUPPORTED;
+        }
+        if (isNameByte(byteAt(pos)))
+            throw UNSUPPORTED;
+        skipWhitespace();
+        if (byteAt(pos++) != '>')
+            throw UNSUPPORTED;
+    }
+
+    /**
+     * Gets the node with the given name, ignoring case like XMLNode.
+     *
+     * @param name   The position of the name
+     * @param length The length of the name, negative for an empty element tag
+     * @return The node, or null if it is not in the schema
+     */
+    private XMLNode node(int name, int length) {
+        if (length < 0)
+            length = -length - 1;
+        for (XMLNode node : NODES) {
+            String nodeName = node.getNodeName();
+            if (nodeName.length() == length && regionMatches(name, nodeName))
+                return node;
+        }
+        return null;
+    }
+
+    /**
+     * Compares bytes with an ASCII name, ignoring case.
+     */
+    private boolean regionMatches(int position, String name) {
+        for (int i = 0; i < name.length(); i++) {
+            int b = buffer.get(position + i);
+            if ((b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b) != name.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Skips XML whitespace.
+     */
+    private void skipWhitespace() {
+        while (pos < limit && isWhitespace(buffer.get(pos)))
+            pos++;
+    }
+
+    /**
+     * Gets the byte at a position.
+     *
+     * @param position The position of the byte
+     * @return The byte
+     * @throws Unsupported If the position is past the end of the bytes
+     */
+    private int byteAt(int position) throws Unsupported {
+        if (position >= limit)
+            throw UNSUPPORTED; // Truncated
+        return buffer.get(position);
+    }
+
+    /**
+     * Checks whether the bytes at the current position are the given ASCII characters.
+     */
+    private boolean startsWith(String prefix) {
+        return startsWith(prefix, pos);
+    }
+
+    /**
+     * Checks whether the bytes at a position are the given characters, as ISO-8859-1 bytes.
+     */
+    private boolean startsWith(String prefix, int position) {
+        if (position < 0 || position + prefix.length() > limit)
+            return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buffer.get(position + i) != (byte) prefix.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Finds ASCII characters from a position.
+     *
+     * @return The position of the characters
+     * @throws Unsupported If the characters are not found
+     */
+    private int indexOf(String s, int from) throws Unsupported {
+        byte first = (byte) s.charAt(0);
+        for (int i = from; i < limit; i++) {
+            if (buffer.get(i) == first && startsWith(s, i))
+                return i;
+        }
+        throw UNSUPPORTED;
+    }
+
+    /**
+     * Checks that eight bytes are ASCII characters copied as they are into a value: no
+     * control character, and no '<', '&' or ']'.
+     *
+     * @param word The bytes, in any byte order
+     * @return True if the bytes are plain text
+     */
+    private static boolean isPlain(long word) {
+        return ((word & HIGH_BITS) | lessThan(word, 0x20) | hasByte(word, '<') | hasByte(word, '&')
+                | hasByte(word, ']')) == 0;
+    }
+
+    /**
+     * Checks whether any byte of a word is a given value.
+     *
+     * @return Non-zero if the word has the byte
+     */
+    private static long hasByte(long word, int b) {
+        return lessThan(word ^ (LOW_BITS * b), 1);
+    }
+
+    /**
+     * Checks whether any byte of a word is below a value of at most 128.
+     *
+     * @return Non-zero if the word has such a byte
+     */
+    private static long lessThan(long word, int n) {
+        return (word - LOW_BITS * n) & ~word & HIGH_BITS;
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+    }
+
+    private static boolean isNameByte(int b) {
+        return b >= 0 && NAME_BYTES[b];
+    }
+
+    private static boolean isXmlChar(int c) {
+        return c == 0x9 || c == 0xA || c == 0xD || c >= 0x20 && c <= 0xD7FF || c >= 0xE000 && c <= 0xFFFD
+                || c >= 0x10000 && c <= 0x10FFFF;
+    }
+
+    /**
+     * Characters of a plain ASCII field value, read in place from the buffer until a
+     * String is needed.
+     */
+    private static class AsciiSequence implements CharSequence {
+        private ByteBuffer buffer;
+        private int start;
+        private int length;
+        private byte[] bytes = new byte[256]; // Copy of the characters, reused
+
+        void set(ByteBuffer buffer, int start, int length) {
+            this.buffer = buffer;
+            this.start = start;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) buffer.get(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        @Override
+        public String toString() {
+            if (bytes.length < length)
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            buffer.get(start, bytes, 0, length);
+            return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /**
+     * Thrown when the bytes are not supported by the scanner. Shared and without a stack
+     * trace, since it only redirects the file to the Parser.
+     */
+    private static class Unsupported extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+}
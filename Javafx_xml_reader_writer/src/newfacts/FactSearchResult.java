@@ -0,0 +1,128 @@
+package newfacts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * A lazily evaluated result of a fact search. Nothing is matched until the result is
+ * used, and counting, paging or sampling the matches walks the candidates without
+ * collecting the full match list.
+ */
+public class FactSearchResult {
+    private final IntFunction<Fact> facts; // Resolves a fact id to the fact
+    private final int size; // Number of facts searched when there are no candidates
+    private final int[] candidates; // Sorted ids of the facts that may match, or null for all facts
+    private final Predicate<Fact> predicate; // Condition every match satisfies
+
+    /**
+     * Constructs a search result.
+     *
+     * @param facts      Resolves a fact id to the fact.
+     * @param size       The number of facts searched when there are no candidates.
+     * @param candidates The sorted ids of the facts that may match, or null to check all facts.
+     * @param predicate  The condition every match satisfies.
+     */
+    FactSearchResult(IntFunction<Fact> facts, int size, int[] candidates, Predicate<Fact> predicate) {
+        this.facts = facts;
+        this.size = size;
+        this.candidates = candidates;
+        this.predicate = predicate;
+    }
+
+    /**
+     * Counts the matching facts.
+     *
+     * @return The number of matches.
+     */
+    public int count() {
+        int count = 0;
+        for (int i = 0; i < length(); i++) {
+            if (predicate.test(fact(i)))
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether no fact matches. Stops at the first match.
+     *
+     * @return True if there are no matches.
+     */
+    public boolean isEmpty() {
+        for (int i = 0; i < length(); i++) {
+            if (predicate.test(fact(i)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves one page of the matches, in list order.
+     *
+     * @param page     The page number, starting at 0.
+     * @param pageSize The number of matches per page.
+     * @return The matches of the page; empty if the page is past the last match.
+     */
+    public List<Fact> page(int page, int pageSize) {
+        List<Fact> result = new ArrayList<>(Math.min(pageSize, length()));
+        long skip = (long) page * pageSize;
+        for (int i = 0; i < length() && result.size() < pageSize; i++) {
+            Fact fact = fact(i);
+            if (predicate.test(fact) && skip-- <= 0)
+                result.add(fact);
+        }
+        return result;
+    }
+
+    /**
+     * Picks one of the matches uniformly at random, with reservoir sampling.
+     *
+     * @return A random match, or null if there are no matches.
+     */
+    public Fact sample() {
+        return sample(count -> {
+        });
+    }
+
+    /**
+     * Picks one of the matches uniformly at random, and reports the number of matches,
+     * which sampling finds anyway.
+     *
+     * @param matches Receives the number of matches.
+     * @return A random match, or null if there are no matches.
+     */
+    Fact sample(IntConsumer matches) {
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+        Fact picked = null;
+        int seen = 0;
+        for (int i = 0; i < length(); i++) {
+            Fact fact = fact(i);
+            if (predicate.test(fact) && rand.nextInt(++seen) == 0)
+                picked = fact;
+        }
+        matches.accept(seen);
+        return picked;
+    }
+
+    /**
+     * Collects all matches, in list order.
+     *
+     * @return A list of the matches, or null if there are none.
+     */
+    public List<Fact> list() {
+        List<Fact> result = page(0, Integer.MAX_VALUE);
+        return result.size() > 0 ? result : null;
+    }
+
+    private int length() {
+        return candidates == null ? size : candidates.length;
+    }
+
+    private Fact fact(int i) {
+        return facts.apply(candidates == null ? i : candidates[i]);
+    }
+}
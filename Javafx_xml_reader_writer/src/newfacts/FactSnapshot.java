@@ -0,0 +1,308 @@
+package newfacts;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A binary cache of the facts parsed from an XML fact file, kept in a ".snapshot"
+ * file beside it. Loading the snapshot skips XML parsing entirely. The snapshot
+ * records the size, modification time and CRC32 of the XML file it was made from,
+ * taken before the file was parsed, and is only used while all three still match.
+ * A snapshot is not written if the file changed while it was parsed.
+ * <p>
+ * Layout: a header with the magic, version, XML size, XML modification time, XML hash,
+ * the position of the string table and the number of facts; then every fact as an
+ * author index, a type index and the length-prefixed UTF-8 text; then the table of the
+ * distinct authors and types. Missing values are stored as -1. The string table comes
+ * last so that facts can be written while they are parsed.
+ */
+class FactSnapshot {
+    static final String SUFFIX = ".snapshot"; // Suffix appended to the XML file name
+    static final int HEADER_SIZE = 44; // Bytes before the first fact
+    static final int RECORD_HEADER_SIZE = 12; // Author index, type index and text length of a fact
+    private static final int MAGIC = 0x46534E50; // "FSNP"
+    private static final int VERSION = 2;
+    private static final long HASH_CHUNK = 64L * 1024 * 1024; // Bytes mapped at a time while hashing
+
+    private final Path xmlFile; // The XML fact file
+    private final Path snapshotFile; // The snapshot file
+
+    /**
+     * Constructs the snapshot of the given XML fact file.
+     *
+     * @param xmlFile The XML fact file.
+     */
+    FactSnapshot(Path xmlFile) {
+        this.xmlFile = xmlFile;
+        this.snapshotFile = xmlFile.resolveSibling(xmlFile.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Gets the path of the snapshot file.
+     *
+     * @return The snapshot file.
+     */
+    Path getFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * Loads the facts from the snapshot, if it matches the current XML file.
+     *
+     * @return The facts, or null if there is no usable snapshot.
+     * @throws IOException If the files cannot be read.
+     */
+    List<Fact> load() throws IOException {
+        if (!Files.exists(snapshotFile) || !Files.exists(xmlFile) || Files.size(snapshotFile) > Integer.MAX_VALUE)
+            return null;
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Header header = readHeader(buffer);
+            if (header == null)
+                return null;
+            buffer.position((int) header.tableOffset);
+            String[] strings = readStrings(buffer);
+            buffer.position(HEADER_SIZE);
+            List<Fact> facts = new ArrayList<>(header.count);
+            for (int i = 0; i < header.count; i++) {
+                int author = buffer.getInt();
+                int type = buffer.getInt();
+                String text = readString(buffer);
+                facts.add(new Fact(author < 0 ? null : strings[author], type < 0 ? null : strings[type], text));
+            }
+            return facts;
+        } catch (RuntimeException e) {
+            return null; // A damaged snapshot is ignored and rebuilt
+        }
+    }
+
+    /**
+     * Reads the header of the snapshot and checks it against the current XML file.
+     *
+     * @param buffer The start of the snapshot; its position is moved past the header.
+     * @return The header, or null if the snapshot is not for the current XML file.
+     * @throws IOException If the XML file cannot be read.
+     */
+    Header readHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+            return null;
+        if (buffer.getLong() != Files.size(xmlFile)
+                || buffer.getLong() != Files.getLastModifiedTime(xmlFile).toMillis()
+                || buffer.getLong() != hash(xmlFile))
+            return null;
+        Header header = new Header();
+        header.tableOffset = buffer.getLong();
+        header.count = buffer.getInt();
+        return header;
+    }
+
+    /**
+     * Reads the size, modification time and CRC32 of the XML file, to be taken before
+     * the file is parsed for a snapshot.
+     *
+     * @return The stamp of the XML file.
+     * @throws IOException If the XML file cannot be read.
+     */
+    Stamp stamp() throws IOException {
+        Stamp stamp = new Stamp();
+        stamp.size = Files.size(xmlFile);
+        stamp.modified = Files.getLastModifiedTime(xmlFile).toMillis();
+        stamp.hash = hash(xmlFile);
+        return stamp;
+    }
+
+    /**
+     * Writes a snapshot of the given facts parsed from the XML file.
+     *
+     * @param stamp The stamp of the XML file, taken before it was parsed.
+     * @param facts The facts parsed from the XML file.
+     * @return True if the snapshot was written, false if the XML file changed since the stamp.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    boolean save(Stamp stamp, List<Fact> facts) throws IOException {
+        return save(stamp, facts.iterator());
+    }
+
+    /**
+     * Writes a snapshot of the facts parsed from the XML file, one fact at a time, so
+     * the facts do not have to be in memory together. The snapshot is written to a
+     * temporary file first, and moved into place only if the XML file still matches
+     * the stamp taken before it was parsed.
+     *
+     * @param stamp The stamp of the XML file, taken before it was parsed.
+     * @param facts The facts parsed from the XML file.
+     * @return True if the snapshot was written, false if the XML file changed since the stamp.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    boolean save(Stamp stamp, Iterator<Fact> facts) throws IOException {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        Path temp = Files.createTempFile(snapshotFile.toAbsolutePath().getParent(),
+                snapshotFile.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+                out.write(new byte[HEADER_SIZE]); // Written once the facts are known
+                long position = HEADER_SIZE;
+                int count = 0;
+                while (facts.hasNext()) {
+                    Fact fact = facts.next();
+                    out.writeInt(intern(fact.getAuthor(), ids, strings));
+                    out.writeInt(intern(fact.getType(), ids, strings));
+                    position += RECORD_HEADER_SIZE + writeString(out, fact.getText());
+                    count++;
+                }
+                out.writeInt(strings.size());
+                for (String s : strings)
+                    writeString(out, s);
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION);
+                header.putLong(stamp.size).putLong(stamp.modified);
+                header.putLong(stamp.hash).putLong(position).putInt(count);
+                header.flip();
+                while (header.hasRemaining())
+                    channel.write(header, header.position());
+            }
+            if (!stamp.equals(stamp()))
+                return false; // The facts may be from either version of the file
+            try {
+                Files.move(temp, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Deletes the snapshot.
+     *
+     * @throws IOException If the snapshot cannot be deleted.
+     */
+    void delete() throws IOException {
+        Files.deleteIfExists(snapshotFile);
+    }
+
+    private static int intern(String value, Map<String, Integer> ids, List<String> strings) {
+        if (value == null)
+            return -1;
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = strings.size();
+            ids.put(value, id);
+            strings.add(value);
+        }
+        return id;
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string.
+     *
+     * @return The number of UTF-8 bytes written after the length.
+     */
+    private static int writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return 0;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        return bytes.length;
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string at the position of the buffer.
+     *
+     * @param buffer The buffer; its position is moved past the string.
+     * @return The string, or null for a missing value.
+     */
+    static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the string table at the position of the buffer.
+     *
+     * @param buffer The buffer positioned at the string table.
+     * @return The authors and types, by index.
+     */
+    static String[] readStrings(ByteBuffer buffer) {
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++)
+            strings[i] = readString(buffer);
+        return strings;
+    }
+
+    /**
+     * Computes the CRC32 of a file, mapping it in chunks.
+     *
+     * @param file The file to be hashed.
+     * @return The CRC32 of the file content.
+     * @throws IOException If the file cannot be read.
+     */
+    static long hash(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += HASH_CHUNK) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(HASH_CHUNK, size - position)));
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * The size, modification time and CRC32 of the XML file a snapshot is made from.
+     */
+    static class Stamp {
+        private long size;
+        private long modified; // Modification time in milliseconds
+        private long hash; // CRC32 of the content
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Stamp && ((Stamp) o).size == size && ((Stamp) o).modified == modified
+                    && ((Stamp) o).hash == hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) * 31 + Long.hashCode(hash);
+        }
+    }
+
+    /**
+     * The location of the string table and the number of facts in a snapshot.
+     */
+    static class Header {
+        long tableOffset; // Position of the string table
+        int count; // Number of facts
+    }
+}
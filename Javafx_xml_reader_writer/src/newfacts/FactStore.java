@@ -0,0 +1,81 @@
+package newfacts;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The append-only storage of a FactList. Reads take no lock: appended facts are
+ * published by writing the size last, and a reader reads the size before the array, so
+ * every fact below the size it sees is visible. The array is replaced by a larger copy
+ * when it is full, and is never changed below the size, so readers holding an older
+ * array still see consistent facts. Appends must not run concurrently; FactList
+ * serializes them.
+ */
+class FactStore {
+    private volatile Fact[] facts = new Fact[16]; // Facts, valid below size
+    private volatile int size = 0; // Number of published facts
+
+    /**
+     * Appends a fact.
+     *
+     * @param fact The fact to be appended.
+     */
+    void add(Fact fact) {
+        int n = size;
+        Fact[] array = capacity(n + 1);
+        array[n] = fact;
+        size = n + 1;
+    }
+
+    /**
+     * Appends facts, publishing them together.
+     *
+     * @param added The facts to be appended.
+     */
+    void addAll(Collection<Fact> added) {
+        int n = size;
+        Fact[] array = capacity(n + added.size());
+        for (Fact fact : added)
+            array[n++] = fact;
+        size = n;
+    }
+
+    /**
+     * Gets the number of facts.
+     *
+     * @return The number of facts.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the fact at the given position.
+     *
+     * @param i The position of the fact.
+     * @return The fact, or null if the position is out of range.
+     */
+    Fact get(int i) {
+        int n = size;
+        return i >= 0 && i < n ? facts[i] : null;
+    }
+
+    /**
+     * Copies the facts into a new array.
+     *
+     * @return The facts published at the time of the call.
+     */
+    Fact[] snapshot() {
+        int n = size;
+        return Arrays.copyOf(facts, n);
+    }
+
+    private Fact[] capacity(int needed) {
+        Fact[] array = facts;
+        if (needed > array.length) {
+            array = Arrays.copyOf(array, Math.max(needed, array.length * 2));
+            facts = array;
+        }
+        return array;
+    }
+}
@@ -1,6 +1,9 @@
 package newfacts;
 
+import java.util.concurrent.CompletableFuture;
+
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
@@ -44,11 +47,11 @@ public class FactViewerUI extends Application {
 		BorderPane root = new BorderPane();
 		Scene scene = new Scene(root);
 
-		factListViewModel(filePath); //fact view
 		factDisplayLabel();
 		nextButton();
 		addButton();
 		createStatusBar(); 
+		factListViewModel(filePath); //fact view
 		
 		HBox factPanel = new HBox(10);
 		factPanel.getChildren().addAll(factDisplayLabel, nextButton);
@@ -83,6 +86,7 @@ public class FactViewerUI extends Application {
 	 * When clicked, this button opens a pop-up window with input fields for the author, type, and text of the new fact.
 	 * The user can enter the necessary information and save the new fact by clicking the "Save" button in the pop-up window.
 	 * If the author or text fields are empty, an error message is displayed.
+	 * The fact is saved in the background; the status label shows the result once it is written.
 	 * I could have improve this code for maintenance wise. However, considering the time limitation, and fact that is simple application, 
 	 * I chose to code it here. 
 	 */
@@ -117,13 +121,14 @@ public class FactViewerUI extends Application {
 				String author = authorField.getText();
 				String type = typeField.getText();
 				String text = textField.getText();
-				NewFactStatus saveStatus = viewModel.saveNewFact(author, type, text);
+				CompletableFuture<NewFactStatus> saving = viewModel.saveNewFactAsync(author, type, text);
+				NewFactStatus saveStatus = saving.getNow(null);
 				
-				if(saveStatus == NewFactStatus.SAVED) {
-					statusLabel.setText(saveStatus.getMessage());
+				if(saveStatus == null || saveStatus == NewFactStatus.SAVED) {
 					authorField.setText("");
 					typeField.setText("");
 					textField.setText("");
+					saving.thenAcceptAsync(status -> statusLabel.setText(status.getMessage()), Platform::runLater);
 				}
 				else {
 					statusLabel.setText(saveStatus.getMessage());
@@ -222,22 +227,37 @@ public class FactViewerUI extends Application {
 	 * Initializes the FactListViewModel by creating a new instance, setting up a listener
 	 * for changes in the fact property, and loading initial facts from a specified XML file.
 	 * The listener updates the fact display label whenever a new fact is loaded.
+	 * The facts are loaded on a background thread, with the progress shown in the status bar.
 	 */
 	private void factListViewModel(String filePath) {
 	    viewModel = new FactListViewModel(); // Creates a new instance of FactListViewModel
+	    MetricsRegistry.getDefault().registerMBean(); // Exposes the load, search and save metrics through JMX
 	    viewModel.getFactProperty().addListener((observable, oldValue, newValue) -> {
 	        // Listens for changes in the fact property
 	        if (newValue != null) {
 	            updateFactLabel(newValue); // Updates the fact display label with the new fact
 	        }
 	    });
-	    viewModel.loadFacts(filePath); // Loads initial facts from the specified XML file
+	    FactLoadTask loadTask = viewModel.loadFactsAsync(filePath); // Loads initial facts from the specified XML file
+	    loadTask.messageProperty().addListener((observable, oldValue, newValue) -> statusBarTextProperty.set(newValue));
+	    loadTask.setOnFailed(e -> statusBarTextProperty.set("Could not load the facts: " + loadTask.getException().getMessage()));
+	    Thread loader = new Thread(loadTask, "fact-loader");
+	    loader.setDaemon(true); // Do not keep the application alive after the window is closed
+	    loader.start();
 	}
 
 	private void updateFactLabel(String fact) {
 		factDisplayLabel.setText(fact);
 	}
 
+	/**
+	 * Waits for pending background saves before the application exits.
+	 */
+	@Override
+	public void stop() {
+		viewModel.close();
+	}
+
 	public static void main(String[] args) {
 		launch(args);
 	}
@@ -0,0 +1,289 @@
+package newfacts;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A write-ahead log of new facts, kept in a ".wal" file beside the XML fact file.
+ * Inserting a fact appends one line to the log instead of rewriting the XML file;
+ * readers replay the log on top of the XML, and the log is folded into the XML
+ * from time to time by the FactPersistenceService.
+ * <p>
+ * The first line is a header holding the size of the XML file when the log was
+ * started. Every other line is one fact: a CRC32 of the record, then the escaped
+ * author, type and text, separated by tabs. A torn or corrupt record ends the log,
+ * and is overwritten by the next append.
+ */
+class FactWriteAheadLog {
+    static final String SUFFIX = ".wal"; // Suffix appended to the XML file name
+    private static final String HEADER = "FACTWAL 1 "; // Start of the header line
+
+    private final Path xmlFile; // The XML fact file
+    private final Path walFile; // The log file
+    private long validEnd = -1; // Offset after the last record this object appended, or -1 to read the log again
+    private long xmlSize = -1; // Size of the XML file when validEnd was set
+
+    /**
+     * Constructs the log of the given XML fact file.
+     *
+     * @param xmlFile The XML fact file.
+     */
+    FactWriteAheadLog(Path xmlFile) {
+        this.xmlFile = xmlFile;
+        this.walFile = xmlFile.resolveSibling(xmlFile.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Gets the size of the log file.
+     *
+     * @return The size in bytes, or 0 if there is no log.
+     * @throws IOException If the size cannot be read.
+     */
+    long size() throws IOException {
+        return Files.exists(walFile) ? Files.size(walFile) : 0;
+    }
+
+    /**
+     * Appends facts to the log with one write, flushed to the storage device. A torn or
+     * corrupt record at the end of the log, left by a process that stopped while writing,
+     * is cut off first, so the new records do not continue its line. A log that was
+     * already folded into the XML file, left by a process that stopped before deleting it,
+     * is started again, so its facts are not replayed with the new ones. The log is only
+     * read for this when it or the XML file was changed by someone else since the last
+     * append; otherwise the new records go to the end of the last one. Must be called
+     * with the lock file of the FactPersistenceService held, on its writer thread.
+     *
+     * @param facts The facts to be logged.
+     * @throws IOException If the log cannot be written.
+     */
+    void append(List<Fact> facts) throws IOException {
+        long xmlNow = Files.size(xmlFile);
+        long end = validEnd;
+        if (end < 0 || size() != end || xmlNow != xmlSize) {
+            Contents contents = readContents();
+            end = isFolded(contents) ? 0 : contents.end;
+        }
+        validEnd = -1; // Until the records are written
+        StringBuilder sb = new StringBuilder();
+        if (end == 0)
+            sb.append(HEADER).append(xmlNow).append('\n');
+        for (Fact fact : facts) {
+            String record = escape(fact.getAuthor()) + '\t' + escape(fact.getType()) + '\t' + escape(fact.getText());
+            sb.append(Long.toHexString(crc(record))).append('\t').append(record).append('\n');
+        }
+        try (FileChannel channel = FileChannel.open(walFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(end);
+            ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, end + buffer.position());
+            }
+            channel.force(false);
+            validEnd = end + buffer.limit();
+            xmlSize = xmlNow;
+        }
+    }
+
+    /**
+     * Reads the facts of the log that are not part of the XML file yet. If the log was
+     * already folded into the XML file, for example when the process stopped before the
+     * log could be deleted, no facts are returned.
+     *
+     * @return The logged facts, in insertion order.
+     * @throws IOException If the log or the XML file cannot be read.
+     */
+    List<Fact> read() throws IOException {
+        Contents contents = readContents();
+        return isFolded(contents) ? new ArrayList<>() : contents.facts;
+    }
+
+    /**
+     * Reads the header and the records of the log, up to the first torn or corrupt record.
+     *
+     * @return The contents of the log, which are empty if there is no valid header.
+     * @throws IOException If the log cannot be read.
+     */
+    private Contents readContents() throws IOException {
+        Contents contents = new Contents();
+        if (size() == 0)
+            return contents;
+        byte[] bytes = Files.readAllBytes(walFile);
+        int newline = indexOfNewline(bytes, 0);
+        String header = newline < 0 ? "" : new String(bytes, 0, newline, StandardCharsets.UTF_8);
+        if (!header.startsWith(HEADER))
+            return contents;
+        try {
+            contents.xmlSize = Long.parseLong(header.substring(HEADER.length()).trim());
+        } catch (NumberFormatException e) {
+            return contents;
+        }
+        contents.end = newline + 1;
+        // A last line without a newline is a torn record
+        for (int start = newline + 1; (newline = indexOfNewline(bytes, start)) >= 0; start = newline + 1) {
+            Fact fact = parse(new String(bytes, start, newline - start, StandardCharsets.UTF_8));
+            if (fact == null)
+                break;
+            contents.facts.add(fact);
+            contents.end = newline + 1;
+        }
+        return contents;
+    }
+
+    private static int indexOfNewline(byte[] bytes, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == '\n')
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Deletes the log, after it was folded into the XML file.
+     *
+     * @throws IOException If the log cannot be deleted.
+     */
+    void delete() throws IOException {
+        validEnd = -1;
+        Files.deleteIfExists(walFile);
+    }
+
+    /**
+     * Adds the facts logged for the given XML file to a fact list.
+     * Errors are printed and leave the list as it is, like the Parser does.
+     *
+     * @param fileName The XML fact file.
+     * @param list     The list of the facts parsed from the XML file.
+     */
+    static void replay(String fileName, FactList list) {
+        List<Fact> facts = readLogged(fileName);
+        if (!facts.isEmpty())
+            list.addAll(facts);
+    }
+
+    /**
+     * Reads the facts logged for the given XML file and not folded into it yet.
+     * Errors are printed and give no facts, like the Parser does.
+     *
+     * @param fileName The XML fact file.
+     * @return The logged facts, in insertion order.
+     */
+    static List<Fact> readLogged(String fileName) {
+        try {
+            return new FactWriteAheadLog(Paths.get(fileName)).read();
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Checks whether the facts of the log were folded into the XML file: the file changed
+     * since the log was started, and ends with the logged facts.
+     */
+    private boolean isFolded(Contents contents) throws IOException {
+        return !contents.facts.isEmpty() && Files.size(xmlFile) != contents.xmlSize && isFolded(contents.facts);
+    }
+
+    /**
+     * Checks whether the XML file already ends with the given facts, in the form the
+     * XMLWriter appends them.
+     */
+    private boolean isFolded(List<Fact> facts) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Fact fact : facts) {
+            XMLWriter.appendFragment(sb, fact);
+        }
+        byte[] block = sb.toString().getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(xmlFile, StandardOpenOption.READ)) {
+            long closingTag = XMLWriter.findClosingTag(channel);
+            if (closingTag < block.length)
+                return false;
+            ByteBuffer tail = ByteBuffer.allocate(block.length);
+            long start = closingTag - block.length;
+            while (tail.hasRemaining() && channel.read(tail, start + tail.position()) > 0) {
+                // Keep reading until the buffer is full
+            }
+            return Arrays.equals(block, tail.array());
+        }
+    }
+
+    /**
+     * Parses one record line.
+     *
+     * @return The fact, or null if the record is corrupt.
+     */
+    private static Fact parse(String line) {
+        int tab = line.indexOf('\t');
+        if (tab < 0)
+            return null;
+        String record = line.substring(tab + 1);
+        String[] fields = record.split("\t", -1);
+        try {
+            if (fields.length != 3 || Long.parseLong(line.substring(0, tab), 16) != crc(record))
+                return null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return new Fact(unescape(fields[0]), unescape(fields[1]), unescape(fields[2]));
+    }
+
+    private static long crc(String record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    private static String escape(String value) {
+        if (value == null)
+            return "\\0";
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\')
+                sb.append("\\\\");
+            else if (c == '\t')
+                sb.append("\\t");
+            else if (c == '\n')
+                sb.append("\\n");
+            else if (c == '\r')
+                sb.append("\\r");
+            else
+                sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static String unescape(String value) {
+        if (value.equals("\\0"))
+            return null;
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The valid part of the log.
+     */
+    private static class Contents {
+        private final List<Fact> facts = new ArrayList<>(); // Facts of the valid records
+        private long xmlSize; // Size of the XML file when the log was started
+        private long end; // Offset after the last valid record, or 0 if there is no valid header
+    }
+}
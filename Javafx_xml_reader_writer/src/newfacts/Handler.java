@@ -1,5 +1,7 @@
 package newfacts;
 
+import java.util.function.Consumer;
+
 import org.xml.sax.Attributes;
 import org.xml.sax.helpers.DefaultHandler;
 
@@ -7,18 +9,35 @@ import org.xml.sax.helpers.DefaultHandler;
  * This class is a SAX handler that extends DefaultHandler and is used to parse XML data
  * containing facts. It implements the necessary methods to handle XML parsing events
  * such as startElement, endElement, and characters. It stores the parsed facts in a FactList
- * object.
+ * object. Authors and types repeat across many facts, so their values are shared through
+ * dictionaries instead of creating a String for every occurrence.
  */
 public class Handler extends DefaultHandler {
     private FactList list = new FactList(); // FactList to store parsed facts
+    private final Consumer<Fact> sink; // Receives each parsed fact
     private Fact temp = null; // Temporary Fact object to hold the current fact being parsed
-    private String currentElement = null; // Name of the current XML element being parsed
+    private XMLNode currentNode = null; // Current XML element being parsed, or null if not in the schema
+    private final StringBuilder text = new StringBuilder(); // Character data of the current element, reused
+    private final StringDictionary authors = new StringDictionary(); // Shared author values
+    private final StringDictionary types = new StringDictionary(); // Shared type values
 
     /**
      * Constructor for Handler class.
      */
     public Handler() {
         super();
+        this.sink = list::add;
+    }
+
+    /**
+     * Constructor for a Handler passing the parsed facts to the given sink instead of
+     * its FactList, which stays empty.
+     *
+     * @param sink Receives each parsed fact, in document order
+     */
+    Handler(Consumer<Fact> sink) {
+        super();
+        this.sink = sink;
     }
 
     /**
@@ -56,8 +75,9 @@ public class Handler extends DefaultHandler {
      */
     @Override
     public void startElement(String uri, String name, String qName, Attributes atts) {
-        currentElement = XMLNode.getValueForNode(qName); // Get the value corresponding to the XML node
-        if (XMLNode.FACT.name().equalsIgnoreCase(qName)) // Check if the current element is a FACT node
+        currentNode = XMLNode.fromNodeName(qName); // Look up the XML node of the element
+        text.setLength(0); // Start a new text run
+        if (currentNode == XMLNode.FACT) // Check if the current element is a FACT node
             temp = new Fact(); // Create a new Fact object
     }
 
@@ -70,14 +90,21 @@ public class Handler extends DefaultHandler {
      */
     @Override
     public void endElement(String uri, String name, String qName) {
-        if (XMLNode.FACT.name().equalsIgnoreCase(qName)) { // Check if the current element is a FACT node
-            list.add(temp); // Add the parsed Fact to the FactList
+        XMLNode node = XMLNode.fromNodeName(qName); // Look up the XML node of the element
+        if (node == XMLNode.FACT) { // Check if the current element is a FACT node
+            sink.accept(temp); // Add the parsed Fact to the FactList
             temp = null; // Reset the temporary Fact object
+        } else if (temp != null && node != null && node != XMLNode.FACT_LIST && !isBlank(text)) {
+            temp.setFact(node, value(node, text)); // Set the fact attribute from the whole text run
         }
+        currentNode = null;
+        text.setLength(0);
     }
 
     /**
      * Called with character data (between start and end tags) within an XML element.
+     * The parser may split the text of one element across several calls, so the data
+     * is accumulated and applied to the fact when the element ends.
      *
      * @param ch        The characters from the XML document
      * @param start     The start position in the character array
@@ -85,14 +112,37 @@ public class Handler extends DefaultHandler {
      */
     @Override
     public void characters(char ch[], int start, int length) {
-        String value = new String(ch, start, length); // Get the character data as a string
-        if (!value.trim().equals("")) { // Check if the string value is not empty or just whitespace
-            for (XMLNode node : XMLNode.values()) { // Iterate through all XMLNode values
-                if (currentElement.equalsIgnoreCase(node.getNodeName())) { // Check if the currentElement matches the XMLNode
-                    temp.setFact(node, value); // Set the fact attribute in the temporary Fact object
-                }
-            }
+        if (temp != null && currentNode != null && currentNode != XMLNode.FACT) // Only keep the text of fact fields
+            text.append(ch, start, length);
+    }
+
+    /**
+     * Creates the value of a fact field, sharing repeated authors and types.
+     *
+     * @param node The field of the fact
+     * @param text The text of the field
+     * @return The value of the field
+     */
+    private String value(XMLNode node, CharSequence text) {
+        if (node == XMLNode.FACT_AUTHOR)
+            return authors.canonical(text);
+        if (node == XMLNode.FACT_TYPE)
+            return types.canonical(text);
+        return text.toString();
+    }
+
+    /**
+     * Checks whether the accumulated text is empty or just whitespace, without creating a String.
+     *
+     * @param sequence The text to check
+     * @return True if the text is blank
+     */
+    private static boolean isBlank(CharSequence sequence) {
+        for (int i = 0; i < sequence.length(); i++) {
+            if (!Character.isWhitespace(sequence.charAt(i)))
+                return false;
         }
+        return true;
     }
 }
 
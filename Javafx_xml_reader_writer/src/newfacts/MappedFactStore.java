@@ -0,0 +1,294 @@
+package newfacts;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A read-only store of the facts of an XML fact file that keeps the facts in the
+ * memory-mapped binary snapshot of the file instead of on the heap. Only an offset
+ * table of one int per fact is held in memory; Fact objects are created when a fact is
+ * retrieved, and searches run over the encoded UTF-8 bytes of the snapshot. This serves
+ * corpora much larger than the heap.
+ * <p>
+ * The snapshot is mapped in segments of at most one gigabyte, each starting at a fact,
+ * so files larger than a single mapping are supported. Facts from the write-ahead log
+ * of the file follow the stored facts, like in a list loaded by the Parser.
+ */
+public class MappedFactStore implements AutoCloseable {
+    private static final long SEGMENT_SIZE = 1L << 30; // Largest mapped segment
+
+    private MappedByteBuffer[] segments; // Mapped parts of the snapshot
+    private final int[] segmentFirst; // Index of the first fact of each segment
+    private final int[] offsets; // Position of each fact in its segment
+    private final String[] strings; // Authors and types by index
+    private final List<Fact> logged; // Facts of the write-ahead log
+
+    /**
+     * Opens the store of the given XML fact file. The snapshot of the file is written
+     * first when it is missing or out of date.
+     *
+     * @param fileName The name of the XML file.
+     * @return The store of the facts of the file.
+     * @throws IOException If the file cannot be read or parsed, or changed while its
+     *                     snapshot was written.
+     */
+    public static MappedFactStore open(String fileName) throws IOException {
+        FactSnapshot snapshot = new FactSnapshot(Paths.get(fileName));
+        MappedFactStore store = map(snapshot, fileName);
+        if (store != null)
+            return store;
+        FactSnapshot.Stamp stamp = snapshot.stamp(); // Taken before parsing, so changes during the parse are detected
+        boolean saved;
+        try (StreamingParser parser = new StreamingParser(
+                new BufferedInputStream(Files.newInputStream(Paths.get(fileName))))) {
+            saved = snapshot.save(stamp, parser);
+            if (parser.hasFailed()) {
+                snapshot.delete();
+                throw new IOException("Cannot parse " + fileName);
+            }
+        }
+        store = saved ? map(snapshot, fileName) : null;
+        if (store == null)
+            throw new IOException(fileName + " changed while its snapshot was written");
+        return store;
+    }
+
+    /**
+     * Maps the snapshot and builds the offset table.
+     *
+     * @return The store, or null if the snapshot does not match the XML file.
+     */
+    private static MappedFactStore map(FactSnapshot snapshot, String fileName) throws IOException {
+        Path file = snapshot.getFile();
+        if (!Files.exists(file))
+            return null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            FactSnapshot.Header header = snapshot.readHeader(
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), FactSnapshot.HEADER_SIZE)));
+            if (header == null)
+                return null;
+            String[] strings = FactSnapshot.readStrings(channel.map(FileChannel.MapMode.READ_ONLY,
+                    header.tableOffset, channel.size() - header.tableOffset));
+
+            List<MappedByteBuffer> segments = new ArrayList<>();
+            int[] segmentFirst = new int[4];
+            int[] offsets = new int[header.count];
+            long start = FactSnapshot.HEADER_SIZE;
+            MappedByteBuffer segment = null;
+            int position = 0;
+            for (int i = 0; i < header.count; i++) {
+                if (segment == null || position + FactSnapshot.RECORD_HEADER_SIZE > segment.limit()
+                        || position + FactSnapshot.RECORD_HEADER_SIZE
+                                + Math.max(0, segment.getInt(position + 8)) > segment.limit()) {
+                    start += position;
+                    segment = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                            Math.min(SEGMENT_SIZE, header.tableOffset - start));
+                    position = 0;
+                    if (segment.limit() < FactSnapshot.RECORD_HEADER_SIZE
+                            || FactSnapshot.RECORD_HEADER_SIZE + Math.max(0, segment.getInt(8)) > segment.limit())
+                        throw new IOException("Damaged snapshot " + file);
+                    if (segments.size() == segmentFirst.length)
+                        segmentFirst = Arrays.copyOf(segmentFirst, segmentFirst.length * 2);
+                    segmentFirst[segments.size()] = i;
+                    segments.add(segment);
+                }
+                offsets[i] = position;
+                position += FactSnapshot.RECORD_HEADER_SIZE + Math.max(0, segment.getInt(position + 8));
+            }
+            return new MappedFactStore(segments.toArray(new MappedByteBuffer[0]),
+                    Arrays.copyOf(segmentFirst, segments.size()), offsets, strings,
+                    FactWriteAheadLog.readLogged(fileName));
+        }
+    }
+
+    private MappedFactStore(MappedByteBuffer[] segments, int[] segmentFirst, int[] offsets, String[] strings,
+            List<Fact> logged) {
+        this.segments = segments;
+        this.segmentFirst = segmentFirst;
+        this.offsets = offsets;
+        this.strings = strings;
+        this.logged = logged;
+    }
+
+    /**
+     * Retrieves the number of facts in the store.
+     *
+     * @return The number of facts.
+     */
+    public int getSize() {
+        return offsets.length + logged.size();
+    }
+
+    /**
+     * Retrieves the fact at the specified index, decoding it from the snapshot.
+     * Every call returns a new Fact object.
+     *
+     * @param i The index of the fact to retrieve.
+     * @return The fact at the specified index, or null if the index is out of range.
+     */
+    public Fact get(int i) {
+        if (i < 0 || i >= getSize())
+            return null;
+        if (i >= offsets.length)
+            return logged.get(i - offsets.length);
+        MappedByteBuffer segment = segment(i);
+        int position = offsets[i];
+        int author = segment.getInt(position);
+        int type = segment.getInt(position + 4);
+        int length = segment.getInt(position + 8);
+        String text = null;
+        if (length >= 0) {
+            byte[] bytes = new byte[length];
+            segment.get(position + FactSnapshot.RECORD_HEADER_SIZE, bytes);
+            text = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new Fact(author < 0 ? null : strings[author], type < 0 ? null : strings[type], text);
+    }
+
+    /**
+     * Retrieves a random fact from the store.
+     *
+     * @return A random fact, or null if the store is empty.
+     */
+    public Fact getRandom() {
+        if (getSize() <= 0)
+            return null;
+        return get(ThreadLocalRandom.current().nextInt(getSize()));
+    }
+
+    /**
+     * Searches for facts that match the given search term across author, text, and type.
+     *
+     * @param searchTerm The search term to match against fact attributes.
+     * @return A list of facts that match the search term, or null if none match.
+     */
+    public List<Fact> searchAll(String searchTerm) {
+        return search(searchTerm, FactSearchMode.ALL);
+    }
+
+    /**
+     * Searches for facts whose field selected by the search mode contains the given
+     * search term, ignoring case, like {@link FactList#search(String, FactSearchMode)}.
+     * Authors and types are matched once per distinct value; texts are matched on their
+     * UTF-8 bytes, and only decoded when they are not plain ASCII.
+     *
+     * @param searchTerm The search term to match against fact attributes.
+     * @param mode       The field to search, or ALL for any field.
+     * @return A list of facts that match the search term, or null if none match.
+     */
+    public List<Fact> search(String searchTerm, FactSearchMode mode) {
+        final String searchText = searchTerm.toLowerCase();
+        boolean all = mode == FactSearchMode.ALL;
+        boolean[] matches = new boolean[strings.length];
+        for (int i = 0; i < strings.length; i++)
+            matches[i] = contains(strings[i], searchText);
+        TextMatcher text = all || mode == FactSearchMode.TEXT ? new TextMatcher(searchText) : null;
+
+        List<Fact> result = new ArrayList<>();
+        for (int i = 0; i < offsets.length; i++) {
+            MappedByteBuffer segment = segment(i);
+            int position = offsets[i];
+            boolean match = false;
+            if (all || mode == FactSearchMode.AUTHOR)
+                match = matches(matches, segment.getInt(position));
+            if (!match && (all || mode == FactSearchMode.TYPE))
+                match = matches(matches, segment.getInt(position + 4));
+            if (!match && text != null)
+                match = text.matches(segment, position);
+            if (match)
+                result.add(get(i));
+        }
+        for (Fact fact : logged) {
+            if ((all || mode == FactSearchMode.AUTHOR) && contains(fact.getAuthor(), searchText)
+                    || (all || mode == FactSearchMode.TEXT) && contains(fact.getText(), searchText)
+                    || (all || mode == FactSearchMode.TYPE) && contains(fact.getType(), searchText))
+                result.add(fact);
+        }
+        return result.size() > 0 ? result : null;
+    }
+
+    /**
+     * Releases the mappings of the store. The mapped memory is returned once the
+     * buffers are garbage collected.
+     */
+    @Override
+    public void close() {
+        segments = null;
+    }
+
+    /**
+     * Finds the segment holding a stored fact.
+     */
+    private MappedByteBuffer segment(int i) {
+        if (segments == null)
+            throw new IllegalStateException("Store is closed");
+        int s = Arrays.binarySearch(segmentFirst, i);
+        return segments[s >= 0 ? s : -s - 2];
+    }
+
+    private static boolean matches(boolean[] matches, int id) {
+        return id >= 0 && matches[id];
+    }
+
+    private static boolean contains(String value, String searchText) {
+        return value != null && value.toLowerCase().contains(searchText);
+    }
+
+    /**
+     * Matches the text of stored facts against a lower-cased search term.
+     * ASCII texts are compared byte by byte, ignoring case; other texts are decoded
+     * and compared like strings, so the results equal those of a FactList.
+     */
+    private static class TextMatcher {
+        private final String searchText; // Lower-cased search term
+        private final byte[] pattern; // ASCII bytes of the term, or null if it is not ASCII
+        private byte[] bytes = new byte[256]; // Text of the current fact
+
+        TextMatcher(String searchText) {
+            this.searchText = searchText;
+            byte[] encoded = searchText.getBytes(StandardCharsets.UTF_8);
+            this.pattern = encoded.length == searchText.length() ? encoded : null;
+        }
+
+        boolean matches(MappedByteBuffer segment, int position) {
+            int length = segment.getInt(position + 8);
+            if (length < 0)
+                return false;
+            if (bytes.length < length)
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            segment.get(position + FactSnapshot.RECORD_HEADER_SIZE, bytes, 0, length);
+            boolean ascii = true;
+            for (int i = 0; i < length && ascii; i++)
+                ascii = bytes[i] >= 0;
+            if (!ascii || pattern == null)
+                return contains(new String(bytes, 0, length, StandardCharsets.UTF_8), searchText);
+            return indexOfIgnoreCase(bytes, length, pattern) >= 0;
+        }
+
+        private static int indexOfIgnoreCase(byte[] text, int length, byte[] pattern) {
+            outer:
+            for (int i = 0; i <= length - pattern.length; i++) {
+                for (int j = 0; j < pattern.length; j++) {
+                    int c = text[i + j];
+                    if (c >= 'A' && c <= 'Z')
+                        c += 'a' - 'A';
+                    if (c != pattern[j])
+                        continue outer;
+                }
+                return i;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package newfacts;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A registry of named metrics: counters, latency and size histograms, and gauges
+ * reading a current value. Recording is lock-free and cheap enough for hot paths.
+ * The metrics can be read as a plain text dump, and through JMX once the registry is
+ * registered as an MBean.
+ * <p>
+ * The application records into the default registry, see {@link #getDefault()}.
+ */
+public class MetricsRegistry {
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>(); // Counters by name
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>(); // Histograms by name
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>(); // Gauges by name
+
+    /**
+     * Gets the registry the application records into.
+     *
+     * @return The default registry.
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Gets the counter with the given name, creating it on first use.
+     *
+     * @param name The name of the counter.
+     * @return The counter.
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, k -> new Counter());
+    }
+
+    /**
+     * Gets the histogram with the given name, creating it on first use.
+     *
+     * @param name The name of the histogram.
+     * @return The histogram.
+     */
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new Histogram());
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge with the same name.
+     *
+     * @param name  The name of the gauge.
+     * @param value Reads the current value.
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Removes a gauge, unless it was replaced by another gauge with the same name since.
+     *
+     * @param name  The name of the gauge.
+     * @param value The gauge registered with {@link #gauge(String, LongSupplier)}.
+     */
+    public void removeGauge(String name, LongSupplier value) {
+        gauges.remove(name, value);
+    }
+
+    /**
+     * Reads all metrics as flat name and value pairs, sorted by name. A histogram gives
+     * its count, mean, median, 99th percentile and maximum.
+     *
+     * @return The current values by name.
+     */
+    public Map<String, Number> snapshot() {
+        Map<String, Number> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.get()));
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+        histograms.forEach((name, histogram) -> {
+            values.put(name + ".count", histogram.getCount());
+            values.put(name + ".mean", histogram.getMean());
+            values.put(name + ".p50", histogram.getPercentile(50));
+            values.put(name + ".p99", histogram.getPercentile(99));
+            values.put(name + ".max", histogram.getMax());
+        });
+        return values;
+    }
+
+    /**
+     * Formats all metrics as text, one "name value" line per value.
+     *
+     * @return The text dump.
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        snapshot().forEach((name, value) -> sb.append(name).append(' ')
+                .append(value instanceof Double ? String.format("%.1f", value) : value).append('\n'));
+        return sb.toString();
+    }
+
+    /**
+     * Registers the registry with the platform MBean server as "newfacts:type=Metrics".
+     * Every value of {@link #snapshot()} is a read-only attribute. Registering twice has
+     * no effect.
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("newfacts:type=Metrics");
+            if (!server.isRegistered(name))
+                server.registerMBean(new MetricsMBean(), name);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * A monotonically increasing count.
+     */
+    public static class Counter {
+        private final LongAdder count = new LongAdder();
+
+        /**
+         * Adds one to the count.
+         */
+        public void increment() {
+            count.increment();
+        }
+
+        /**
+         * Adds to the count.
+         *
+         * @param n The amount to be added.
+         */
+        public void add(long n) {
+            count.add(n);
+        }
+
+        /**
+         * Gets the count.
+         *
+         * @return The current count.
+         */
+        public long get() {
+            return count.sum();
+        }
+    }
+
+    /**
+     * A histogram of non-negative values, such as latencies in nanoseconds, in the style
+     * of an HdrHistogram: values below 16 are counted exactly, larger values in buckets
+     * whose width is an eighth of their power of two, so every value is known within
+     * 12.5%. Recording takes constant time and no lock.
+     */
+    public static class Histogram {
+        private static final int SUB_BITS = 3; // Bits of precision below the leading bit
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int LINEAR = 2 * SUB_BUCKETS; // Values counted exactly
+        private static final int BUCKETS = LINEAR + (63 - 4) * SUB_BUCKETS; // Exponents 4 to 62
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        /**
+         * Records a value; negative values are recorded as 0.
+         *
+         * @param value The value.
+         */
+        public void record(long value) {
+            value = Math.max(0, value);
+            buckets.incrementAndGet(index(value));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        /**
+         * Records the time elapsed since the given start.
+         *
+         * @param startNanos The start, from System.nanoTime().
+         */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * Gets the number of recorded values.
+         *
+         * @return The count.
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Gets the largest recorded value.
+         *
+         * @return The maximum, or 0 if nothing was recorded.
+         */
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * Gets the mean of the recorded values.
+         *
+         * @return The mean, or 0 if nothing was recorded.
+         */
+        public double getMean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        /**
+         * Estimates a percentile as the upper bound of the bucket holding it.
+         *
+         * @param percentile The percentile, from 0 to 100.
+         * @return The estimated value, or 0 if nothing was recorded.
+         */
+        public long getPercentile(double percentile) {
+            long n = count.sum();
+            if (n == 0)
+                return 0;
+            long target = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= target)
+                    return Math.min(upperBound(i), getMax());
+            }
+            return getMax();
+        }
+
+        static int index(long value) {
+            if (value < LINEAR)
+                return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value); // At least 4
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return LINEAR + (exponent - 4) * SUB_BUCKETS + sub;
+        }
+
+        static long upperBound(int index) {
+            if (index < LINEAR)
+                return index;
+            int exponent = (index - LINEAR) / SUB_BUCKETS + 4;
+            int sub = (index - LINEAR) % SUB_BUCKETS;
+            long lower = (long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+            return lower + (1L << (exponent - SUB_BITS)) - 1;
+        }
+    }
+
+    /**
+     * Exposes the snapshot of the registry as JMX attributes.
+     */
+    private class MetricsMBean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Number value = snapshot().get(attribute);
+            if (value == null)
+                throw new AttributeNotFoundException(attribute);
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Number> values = snapshot();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                if (values.containsKey(attribute))
+                    list.add(new Attribute(attribute, values.get(attribute)));
+            }
+            return list;
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            snapshot().forEach((name, value) -> attributes.add(new MBeanAttributeInfo(name,
+                    value.getClass().getName(), name, true, false, false)));
+            return new MBeanInfo(MetricsRegistry.class.getName(), "Fact application metrics",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+    }
+}
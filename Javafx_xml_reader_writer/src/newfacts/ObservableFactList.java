@@ -0,0 +1,59 @@
+package newfacts;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+/**
+ * A JavaFX view of a FactList. The facts of the list are mirrored in an ObservableList
+ * that is only changed on the JavaFX application thread, so it can back controls such
+ * as a ListView while other threads add facts to the FactList.
+ */
+public class ObservableFactList implements AutoCloseable {
+    private final FactList list; // The mirrored list
+    private final ObservableList<Fact> facts = FXCollections.observableArrayList(); // The mirror
+    private final ObservableList<Fact> view = FXCollections.unmodifiableObservableList(facts); // Read-only mirror
+    private final Consumer<List<Fact>> listener; // Posts appended facts to the mirror
+
+    /**
+     * Constructs a view of the given list, updated on the JavaFX application thread.
+     *
+     * @param list The fact list to be observed.
+     */
+    public ObservableFactList(FactList list) {
+        this(list, Platform::runLater);
+    }
+
+    /**
+     * Constructs a view of the given list, updated through the given executor.
+     *
+     * @param list       The fact list to be observed.
+     * @param uiExecutor Runs the updates of the observable list.
+     */
+    public ObservableFactList(FactList list, Executor uiExecutor) {
+        this.list = list;
+        this.listener = added -> uiExecutor.execute(() -> facts.addAll(added));
+        list.addListener(listener);
+    }
+
+    /**
+     * Gets the observable facts. The list cannot be changed through this view.
+     *
+     * @return The observable facts, in the order of the FactList.
+     */
+    public ObservableList<Fact> getFacts() {
+        return view;
+    }
+
+    /**
+     * Stops mirroring the fact list.
+     */
+    @Override
+    public void close() {
+        list.removeListener(listener);
+    }
+}
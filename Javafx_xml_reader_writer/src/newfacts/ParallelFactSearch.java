@@ -0,0 +1,70 @@
+package newfacts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/**
+ * A fork-join task filtering a range of a fact array. The range is split in halves
+ * until it is small enough, and the results of the halves are joined left before
+ * right, so the matches keep the order of the array.
+ */
+class ParallelFactSearch extends RecursiveTask<List<Fact>> {
+    private static final long serialVersionUID = 1L;
+
+    private final Fact[] facts; // Snapshot of the facts being searched
+    private final int from; // First position of the range, inclusive
+    private final int to; // Last position of the range, exclusive
+    private final int leafSize; // Largest range filtered without splitting
+    private final Predicate<Fact> predicate; // Condition of the search
+
+    /**
+     * Constructs a task filtering a range of the given facts.
+     *
+     * @param facts     The facts to be searched.
+     * @param from      The first position of the range, inclusive.
+     * @param to        The last position of the range, exclusive.
+     * @param leafSize  The largest range filtered without splitting.
+     * @param predicate The predicate used to filter facts.
+     */
+    ParallelFactSearch(Fact[] facts, int from, int to, int leafSize, Predicate<Fact> predicate) {
+        this.facts = facts;
+        this.from = from;
+        this.to = to;
+        this.leafSize = leafSize;
+        this.predicate = predicate;
+    }
+
+    @Override
+    protected List<Fact> compute() {
+        if (to - from <= leafSize)
+            return filter(facts, from, to, predicate);
+        int middle = (from + to) >>> 1;
+        ParallelFactSearch left = new ParallelFactSearch(facts, from, middle, leafSize, predicate);
+        ParallelFactSearch right = new ParallelFactSearch(facts, middle, to, leafSize, predicate);
+        left.fork();
+        List<Fact> rightResult = right.compute();
+        List<Fact> result = left.join();
+        result.addAll(rightResult);
+        return result;
+    }
+
+    /**
+     * Filters a range of the given facts on the calling thread.
+     *
+     * @param facts     The facts to be searched.
+     * @param from      The first position of the range, inclusive.
+     * @param to        The last position of the range, exclusive.
+     * @param predicate The predicate used to filter facts.
+     * @return The matching facts, in array order.
+     */
+    static List<Fact> filter(Fact[] facts, int from, int to, Predicate<Fact> predicate) {
+        List<Fact> result = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            if (predicate.test(facts[i]))
+                result.add(facts[i]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,325 @@
+package newfacts;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * The ParallelParser class parses a large XML file of facts on several threads.
+ * The file is split into chunks starting at a fact element, each chunk is memory-mapped
+ * and read by its own FactScanner, or SAX parser and Handler, as if it were a fact list
+ * of its own, and the facts of the chunks are concatenated in document order.
+ * Only the content of the root element is split, so a file that does not fit this
+ * layout (a document type declaration, another encoding than UTF-8, or a chunk that does
+ * not parse on its own) is reported as not splittable, and must be parsed sequentially.
+ */
+public class ParallelParser {
+    /** Smallest chunk, so small files are not split into more chunks than useful */
+    public static final long MIN_CHUNK_SIZE = 1L << 20;
+    /** Largest chunk, which bounds the mapped memory of a chunk */
+    public static final long MAX_CHUNK_SIZE = 1L << 26;
+    private static final int CHUNKS_PER_THREAD = 4; // Evens out chunks parsing at different speeds
+    private static final int WINDOW = 1 << 16; // Bytes read at once when looking for a split
+
+    private static final byte[] FACT_TAG = "<fact".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><fact-list>"
+            .getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FOOTER = "</fact-list>".getBytes(StandardCharsets.US_ASCII);
+
+    private final ForkJoinPool pool; // Pool parsing the chunks
+
+    /**
+     * Constructor for a ParallelParser using the common pool.
+     */
+    public ParallelParser() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for a ParallelParser.
+     *
+     * @param pool The pool parsing the chunks
+     */
+    public ParallelParser(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Parses the facts of the given file in chunks. Facts of the write-ahead log are not included.
+     *
+     * @param fileName The name of the XML file to be parsed
+     * @return The facts of the file in document order, or null if the file cannot be parsed
+     *         in chunks, in which case it must be parsed sequentially
+     * @throws IOException If the file cannot be read
+     */
+    public List<Fact> parse(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            List<long[]> chunks = split(channel);
+            if (chunks == null)
+                return null;
+
+            List<Future<List<Fact>>> results = new ArrayList<>(chunks.size());
+            for (long[] chunk : chunks) {
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+                results.add(pool.submit((Callable<List<Fact>>) () -> parseChunk(mapped)));
+            }
+            List<List<Fact>> parsed = new ArrayList<>(results.size());
+            int size = 0;
+            for (Future<List<Fact>> result : results) {
+                List<Fact> facts = result.get();
+                if (facts == null) {
+                    cancel(results);
+                    return null;
+                }
+                parsed.add(facts);
+                size += facts.size();
+            }
+
+            List<Fact> facts = new ArrayList<>(size);
+            for (List<Fact> chunk : parsed)
+                facts.addAll(chunk);
+            return facts;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Parses one chunk of facts with the FactScanner, or if it is not supported, with a SAX
+     * parser, wrapped in a fact list element.
+     *
+     * @param chunk The bytes of the chunk
+     * @return The facts of the chunk, or null if the chunk is not well-formed on its own
+     */
+    static List<Fact> parseChunk(ByteBuffer chunk) {
+        List<Fact> facts = new ArrayList<>();
+        if (FactScanner.scanContent(chunk.duplicate(), facts::add))
+            return facts;
+        facts.clear();
+        try {
+            InputStream input = new SequenceInputStream(new ByteArrayInputStream(HEADER),
+                    new SequenceInputStream(new ByteBufferInputStream(chunk), new ByteArrayInputStream(FOOTER)));
+            SAXParserFactory.newInstance().newSAXParser().parse(input, new Handler(facts::add));
+            return facts;
+        } catch (Exception e) {
+            return null; // A construct spans two chunks, the file is parsed sequentially instead
+        }
+    }
+
+    /**
+     * Cancels the chunks not parsed yet.
+     *
+     * @param results The results of the chunks
+     */
+    private static void cancel(List<Future<List<Fact>>> results) {
+        for (Future<List<Fact>> result : results)
+            result.cancel(false);
+    }
+
+    /**
+     * Splits the content of the root element into chunks, each but the first starting at
+     * a fact element.
+     *
+     * @param channel The channel of the file
+     * @return The start and end offsets of the chunks, or null if the file cannot be split
+     * @throws IOException If the file cannot be read
+     */
+    private List<long[]> split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long first = findContent(channel, size);
+        if (first < 0)
+            return null;
+        long end = findRootEnd(channel, first, size);
+        if (end < 0)
+            return null;
+
+        long chunkSize = (end - first) / ((long) pool.getParallelism() * CHUNKS_PER_THREAD);
+        chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunkSize));
+        List<long[]> chunks = new ArrayList<>();
+        long start = first;
+        while (start < end) {
+            long next = start + chunkSize < end ? findFact(channel, start + chunkSize, end) : -1;
+            if (next < 0)
+                next = end;
+            chunks.add(new long[] { start, next });
+            start = next;
+        }
+        return chunks;
+    }
+
+    /**
+     * Finds the content of the root element, after its start tag. The prolog before it must be
+     * replaceable by the chunk header: no document type declaration, which could declare
+     * entities or default attributes, and no encoding other than UTF-8.
+     *
+     * @param channel The channel of the file
+     * @param size    The size of the file
+     * @return The offset after the start tag of the root element, or -1 if the chunks
+     *         cannot be parsed without the prolog
+     * @throws IOException If the file cannot be read
+     */
+    private static long findContent(FileChannel channel, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(WINDOW, size));
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0)
+            ;
+        String prolog = new String(buffer.array(), 0, buffer.position(), StandardCharsets.ISO_8859_1);
+        if (prolog.startsWith("\u00fe\u00ff") || prolog.startsWith("\u00ff\u00fe")) // UTF-16 byte order marks
+            return -1;
+        int i = prolog.startsWith("\u00ef\u00bb\u00bf") ? 3 : 0; // UTF-8 byte order mark
+        while (i >= 0 && i < prolog.length()) {
+            if (Character.isWhitespace(prolog.charAt(i))) {
+                i++;
+            } else if (prolog.startsWith("<?", i)) {
+                int end = prolog.indexOf("?>", i);
+                if (end < 0 || (prolog.startsWith("<?xml", i) && !isUtf8(prolog.substring(i, end))))
+                    return -1;
+                i = end + 2;
+            } else if (prolog.startsWith("<!--", i)) {
+                int end = prolog.indexOf("-->", i);
+                i = end < 0 ? -1 : end + 3;
+            } else if (prolog.charAt(i) == '<' && !prolog.startsWith("<!", i)) {
+                char quote = 0; // Quote of the attribute value being skipped
+                for (int j = i + 1; j < prolog.length(); j++) {
+                    char c = prolog.charAt(j);
+                    if (quote != 0) {
+                        if (c == quote)
+                            quote = 0;
+                    } else if (c == '"' || c == '\'') {
+                        quote = c;
+                    } else if (c == '>') {
+                        return prolog.charAt(j - 1) == '/' ? -1 : j + 1; // An empty root has no facts to split
+                    }
+                }
+                return -1;
+            } else {
+                return -1; // A document type declaration, or not XML
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks that an XML declaration declares no encoding, or UTF-8.
+     *
+     * @param declaration The XML declaration
+     * @return True if the file is encoded in UTF-8
+     */
+    private static boolean isUtf8(String declaration) {
+        String lower = declaration.toLowerCase(Locale.ROOT);
+        int encoding = lower.indexOf("encoding");
+        return encoding < 0 || lower.substring(encoding).matches("(?s)encoding\\s*=\\s*[\"']utf-8[\"'].*");
+    }
+
+    /**
+     * Finds the end tag of the root element, the last end tag of the file.
+     *
+     * @param channel The channel of the file
+     * @param from    The offset from which the end tag may start
+     * @param size    The size of the file
+     * @return The offset of the end tag, or -1 if there is none
+     * @throws IOException If the file cannot be read
+     */
+    static long findRootEnd(FileChannel channel, long from, long size) throws IOException {
+        long start = Math.max(from, size - WINDOW);
+        ByteBuffer buffer = ByteBuffer.allocate((int) (size - start));
+        while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) >= 0)
+            ;
+        byte[] bytes = buffer.array();
+        for (int i = buffer.position() - 2; i >= 0; i--) {
+            if (bytes[i] == '<' && bytes[i + 1] == '/')
+                return start + i;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the next fact start tag, matched without case like the node names.
+     *
+     * @param channel The channel of the file
+     * @param from    The offset to search from
+     * @param end     The offset to search to
+     * @return The offset of the start tag, or -1 if there is none
+     * @throws IOException If the file cannot be read
+     */
+    private static long findFact(FileChannel channel, long from, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(WINDOW);
+        byte[] bytes = buffer.array();
+        long position = from;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(WINDOW, end - position));
+            while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0)
+                ;
+            int length = buffer.position();
+            for (int i = 0; i + FACT_TAG.length < length; i++) {
+                if (isFactTag(bytes, i))
+                    return position + i;
+            }
+            if (position + length >= end)
+                break;
+            position += length - FACT_TAG.length; // Keep a tag cut by the end of the window
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether a fact start tag begins at the given index.
+     *
+     * @param bytes The bytes to check
+     * @param i     The index of the tag, followed by at least one more byte than the tag name
+     * @return True if the bytes at the index are a fact start tag
+     */
+    private static boolean isFactTag(byte[] bytes, int i) {
+        for (int j = 0; j < FACT_TAG.length; j++) {
+            if ((bytes[i + j] | 0x20) != (FACT_TAG[j] | 0x20)) // '<' is unchanged by the case bit
+                return false;
+        }
+        byte next = bytes[i + FACT_TAG.length];
+        return next == '>' || next == '/' || next == ' ' || next == '\t' || next == '\r' || next == '\n';
+    }
+
+    /**
+     * Input stream over the remaining bytes of a buffer.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+            if (!buffer.hasRemaining())
+                return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package newfacts;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
@@ -8,25 +13,167 @@ import javax.xml.parsers.SAXParserFactory;
 /**
  * The Parser class is responsible for parsing XML files containing facts
  * using a SAX parser. It utilizes a Handler object to handle the parsing events
- * and store the parsed facts in a FactList.
+ * and store the parsed facts in a FactList. Facts from the write-ahead log of the
+ * file that are not folded into the XML yet are added after the parsed facts.
+ * On request, the parsed facts are cached in a binary snapshot beside the file, which is
+ * loaded instead of parsing as long as the file does not change. Files in the plain layout
+ * written by XMLWriter are read by a FactScanner instead of the SAX parser, and large
+ * files are parsed in chunks on several threads by a ParallelParser when their layout
+ * allows it.
  */
 public class Parser {
     private Handler handler; // Handler object to handle XML parsing
+    private FactList factList; // Facts of the file
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.getDefault();
+    private static final MetricsRegistry.Histogram LOAD_TIME = METRICS.histogram("parser.load.nanos");
+    private static final MetricsRegistry.Histogram THROUGHPUT = METRICS.histogram("parser.bytes_per_second");
+    private static final MetricsRegistry.Counter FACTS = METRICS.counter("parser.facts");
+    private static final MetricsRegistry.Counter BYTES = METRICS.counter("parser.bytes");
+    private static final MetricsRegistry.Counter SNAPSHOT_HITS = METRICS.counter("parser.snapshot.hits");
+    private static final MetricsRegistry.Counter ERRORS = METRICS.counter("parser.errors");
+    private static final MetricsRegistry.Counter PARALLEL_LOADS = METRICS.counter("parser.parallel");
+    private static final MetricsRegistry.Counter SCANNED_LOADS = METRICS.counter("parser.scanned");
+
+    /** Size from which a file is parsed on several threads */
+    public static final long PARALLEL_THRESHOLD = 4 * ParallelParser.MIN_CHUNK_SIZE;
 
     /**
-     * Constructor for the Parser class.
+     * Constructor for the Parser class. The file is always parsed, and no snapshot is written.
      *
      * @param fileName The name of the XML file to be parsed
      */
     public Parser(String fileName) {
+        this(fileName, false);
+    }
+
+    /**
+     * Constructor for the Parser class.
+     *
+     * @param fileName    The name of the XML file to be parsed
+     * @param useSnapshot True to load the facts from the snapshot of the file when it is
+     *                    up to date, and to write a new snapshot after parsing
+     */
+    public Parser(String fileName, boolean useSnapshot) {
+        this(fileName, useSnapshot, true);
+    }
+
+    /**
+     * Constructor for the Parser class.
+     *
+     * @param fileName    The name of the XML file to be parsed
+     * @param useSnapshot True to load the facts from the snapshot of the file when it is
+     *                    up to date, and to write a new snapshot after parsing
+     * @param replayLog   True to add the facts of the write-ahead log after the parsed facts
+     */
+    Parser(String fileName, boolean useSnapshot, boolean replayLog) {
+        final long start = System.nanoTime();
+        FactSnapshot snapshot = new FactSnapshot(Paths.get(fileName));
+        if (useSnapshot) {
+            try {
+                List<Fact> facts = snapshot.load();
+                if (facts != null) {
+                    factList = new FactList();
+                    factList.addAll(facts);
+                    SNAPSHOT_HITS.increment();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                ERRORS.increment();
+            }
+        }
+        final boolean parsed = factList == null;
+        if (parsed) {
+            FactSnapshot.Stamp stamp = null; // Taken before parsing, so changes during the parse are detected
+            if (useSnapshot) {
+                try {
+                    stamp = snapshot.stamp();
+                } catch (IOException e) {
+                    // Left to the parser, which reports the error
+                }
+            }
+            boolean complete = parse(fileName);
+            if (stamp != null && complete) {
+                try {
+                    List<Fact> facts = new ArrayList<>(factList.getSize());
+                    for (int i = 0; i < factList.getSize(); i++)
+                        facts.add(factList.get(i));
+                    snapshot.save(stamp, facts);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    ERRORS.increment();
+                }
+            }
+        }
+        if (replayLog)
+            FactWriteAheadLog.replay(fileName, factList); // Add the facts logged since the last compaction
+        record(fileName, start, parsed);
+    }
+
+    /**
+     * Records the load time of a load in the metrics, and the size and throughput of
+     * the file if it was parsed rather than loaded from its snapshot.
+     *
+     * @param fileName The name of the loaded file
+     * @param start    The start of the load, from System.nanoTime()
+     * @param parsed   True if the file was parsed
+     */
+    private void record(String fileName, long start, boolean parsed) {
+        long nanos = System.nanoTime() - start;
+        LOAD_TIME.record(nanos);
+        FACTS.add(factList.getSize());
+        if (!parsed)
+            return;
+        long bytes = new File(fileName).length();
+        BYTES.add(bytes);
+        THROUGHPUT.record(nanos > 0 ? (long) (bytes * 1e9 / nanos) : 0);
+    }
+
+    /**
+     * Parses the XML file in parallel chunks if the file is large enough and can be split,
+     * else with the FactScanner if it supports the file, else with the SAX parser.
+     *
+     * @param fileName The name of the XML file to be parsed
+     * @return True if the whole file was parsed, false if parsing stopped at an error
+     */
+    private boolean parse(String fileName) {
+        File file = new File(fileName); // Create a File object from the file name
+        if (file.length() >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            try {
+                List<Fact> facts = new ParallelParser().parse(fileName);
+                if (facts != null) {
+                    factList = new FactList();
+                    factList.addAll(facts);
+                    PARALLEL_LOADS.increment();
+                    return true;
+                }
+            } catch (IOException e) {
+                e.printStackTrace(); // Parse sequentially instead
+            }
+        }
+        try {
+            List<Fact> facts = FactScanner.scan(fileName);
+            if (facts != null) {
+                factList = new FactList();
+                factList.addAll(facts);
+                SCANNED_LOADS.increment();
+                return true;
+            }
+        } catch (IOException e) {
+            // Left to the SAX parser, which reports the error
+        }
+
+        handler = new Handler(); // Initialize the Handler object
+        factList = handler.getList();
         try {
-            File file = new File(fileName); // Create a File object from the file name
-            handler = new Handler(); // Initialize the Handler object
             SAXParserFactory factory = SAXParserFactory.newInstance(); // Get a SAXParserFactory instance
             SAXParser saxParser = factory.newSAXParser(); // Create a SAXParser instance
             saxParser.parse(file, handler); // Parse the XML file using the SAXParser and the Handler
+            return true;
         } catch (Exception e) {
             e.printStackTrace(); // Print the stack trace if an exception occurs
+            ERRORS.increment();
+            return false;
         }
     }
 
@@ -36,6 +183,6 @@ public class Parser {
      * @return FactList object containing parsed facts
      */
     public FactList getFactList() {
-        return handler.getList(); // Return the FactList from the Handler object
+        return factList; // Return the FactList loaded from the snapshot or the Handler object
     }
 }
@@ -0,0 +1,149 @@
+package newfacts;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A growable, sorted list of fact ids used by the search indexes of FactList.
+ * Ids are appended in increasing order, since facts are only ever appended to a FactList.
+ */
+class PostingList {
+    private int[] ids = new int[4]; // Fact ids, sorted ascending
+    private int size = 0; // Number of ids in the list
+
+    /**
+     * Appends a fact id. Adding the last id again has no effect.
+     *
+     * @param id The fact id, not smaller than the last id in the list.
+     */
+    void add(int id) {
+        if (size > 0 && ids[size - 1] == id)
+            return;
+        if (size == ids.length)
+            ids = Arrays.copyOf(ids, size * 2);
+        ids[size++] = id;
+    }
+
+    /**
+     * Gets the number of ids in the list.
+     *
+     * @return The number of ids.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the id at the given position.
+     *
+     * @param i The position in the list.
+     * @return The fact id.
+     */
+    int get(int i) {
+        return ids[i];
+    }
+
+    /**
+     * Finds the first position, at or after the given one, whose id is not smaller than
+     * the given id. Gallops forward in doubling steps, then searches the last step.
+     *
+     * @param id   The fact id to find.
+     * @param from The position to start at; the ids before it must be smaller than id.
+     * @return The position of the id, or of the next larger id, or the size of the list.
+     */
+    int seek(int id, int from) {
+        int to = from;
+        for (int step = 1; to < size && ids[to] < id; step *= 2) {
+            from = to + 1;
+            to += step;
+        }
+        int i = Arrays.binarySearch(ids, from, Math.min(to, size), id);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    /**
+     * Copies the ids into a new array.
+     *
+     * @return The sorted fact ids.
+     */
+    int[] toArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * Merges sorted id arrays into one sorted array without duplicates.
+     *
+     * @param a The first sorted ids.
+     * @param b The second sorted ids.
+     * @return The sorted union of both arrays.
+     */
+    static int[] union(int[] a, int[] b) {
+        int[] out = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            int next;
+            if (j >= b.length || (i < a.length && a[i] < b[j]))
+                next = a[i++];
+            else if (i >= a.length || b[j] < a[i])
+                next = b[j++];
+            else {
+                next = a[i++];
+                j++;
+            }
+            out[n++] = next;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Intersects posting lists without copying them. Each id of the first list is looked
+     * up in the others, probing each list from where its previous lookup ended, so the
+     * first list should be the shortest.
+     *
+     * @param lists The posting lists, at least one.
+     * @return The sorted ids contained in all lists.
+     */
+    static int[] intersect(List<PostingList> lists) {
+        PostingList first = lists.get(0);
+        int[] out = new int[first.size];
+        int[] positions = new int[lists.size()]; // Where the next lookup in each list starts
+        int n = 0;
+        for (int i = 0; i < first.size; i++) {
+            int id = first.ids[i];
+            boolean found = true;
+            for (int l = 1; l < lists.size() && found; l++) {
+                PostingList other = lists.get(l);
+                positions[l] = other.seek(id, positions[l]);
+                if (positions[l] == other.size)
+                    return Arrays.copyOf(out, n); // No larger ids are left in that list
+                found = other.ids[positions[l]] == id;
+            }
+            if (found)
+                out[n++] = id;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Intersects sorted id arrays.
+     *
+     * @param a The first sorted ids.
+     * @param b The second sorted ids.
+     * @return The sorted ids contained in both arrays.
+     */
+    static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j])
+                i++;
+            else if (b[j] < a[i])
+                j++;
+            else {
+                out[n++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
@@ -0,0 +1,215 @@
+package newfacts;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The StreamingParser class is a pull parser for XML files containing facts,
+ * built on a StAX XMLStreamReader. Unlike Parser, it does not build a FactList:
+ * facts are read one at a time, so files of any size are processed in constant memory.
+ * When a file is parsed by name, the facts of its write-ahead log follow the parsed facts.
+ * Repeated authors and types share one String instance, like with the Parser.
+ */
+public class StreamingParser implements Iterator<Fact>, AutoCloseable {
+    private InputStream input; // Stream of the XML file
+    private XMLStreamReader reader; // StAX reader over the input stream
+    private final StringBuilder text = new StringBuilder(); // Character data of the current element
+    private Fact next = null; // Next fact to be returned by the iterator
+    private String fileName = null; // Name of the parsed file, or null when parsing a stream
+    private Iterator<Fact> logged = null; // Facts of the write-ahead log, read after the XML
+    private boolean failed = false; // Whether parsing stopped at an error
+    private final StringDictionary authors = new StringDictionary(); // Shared author values
+    private final StringDictionary types = new StringDictionary(); // Shared type values
+
+    /**
+     * Constructor for the StreamingParser class.
+     *
+     * @param fileName The name of the XML file to be parsed
+     */
+    public StreamingParser(String fileName) {
+        this.fileName = fileName;
+        try {
+            open(new BufferedInputStream(new FileInputStream(fileName)));
+        } catch (IOException e) {
+            e.printStackTrace(); // Print the stack trace if the file cannot be opened
+            failed = true;
+        }
+    }
+
+    /**
+     * Constructor for the StreamingParser class reading from a stream.
+     * The stream is closed when the parser is closed.
+     *
+     * @param input The stream of the XML document to be parsed
+     */
+    public StreamingParser(InputStream input) {
+        open(input);
+    }
+
+    /**
+     * Opens a StAX reader over the given stream.
+     *
+     * @param input The stream of the XML document to be parsed
+     */
+    private void open(InputStream input) {
+        this.input = input;
+        try {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+            reader = factory.createXMLStreamReader(input);
+        } catch (XMLStreamException e) {
+            e.printStackTrace();
+            failed = true;
+            close();
+        }
+    }
+
+    /**
+     * Returns a sequential stream of the remaining facts. Closing the stream closes the parser.
+     *
+     * @return Stream of facts in document order
+     */
+    public Stream<Fact> stream() {
+        Spliterator<Fact> spliterator = Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    /**
+     * Returns a stream of the facts in the given file. The stream must be closed
+     * to release the file.
+     *
+     * @param fileName The name of the XML file to be parsed
+     * @return Stream of facts in document order
+     */
+    public static Stream<Fact> stream(String fileName) {
+        return new StreamingParser(fileName).stream();
+    }
+
+    /**
+     * Tells whether parsing stopped before the end of the document, because the
+     * document could not be opened or is malformed.
+     *
+     * @return True if some facts of the document may not have been read
+     */
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null)
+            next = readFact();
+        if (next == null && fileName != null) {
+            if (logged == null)
+                logged = FactWriteAheadLog.readLogged(fileName).iterator();
+            if (logged.hasNext())
+                next = logged.next();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Fact next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        Fact fact = next;
+        next = null;
+        return fact;
+    }
+
+    /**
+     * Closes the reader and the underlying stream.
+     */
+    @Override
+    public void close() {
+        try {
+            if (reader != null)
+                reader.close();
+            if (input != null)
+                input.close();
+        } catch (XMLStreamException | IOException e) {
+            e.printStackTrace();
+        } finally {
+            reader = null;
+            input = null;
+        }
+    }
+
+    /**
+     * Advances the reader to the end of the next fact element.
+     * Character data is accumulated across events, so text split by the reader is kept whole.
+     *
+     * @return The next fact, or null at the end of the document or on a parse error
+     */
+    private Fact readFact() {
+        if (reader == null)
+            return null;
+        Fact fact = null;
+        XMLNode current = null;
+        try {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    current = XMLNode.fromNodeName(reader.getLocalName());
+                    text.setLength(0);
+                    if (current == XMLNode.FACT)
+                        fact = new Fact();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (fact != null && current != null && current != XMLNode.FACT)
+                        text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    XMLNode node = XMLNode.fromNodeName(reader.getLocalName());
+                    if (node == XMLNode.FACT && fact != null)
+                        return fact;
+                    if (fact != null && node != null && node != XMLNode.FACT_LIST) {
+                        if (!isBlank(text))
+                            fact.setFact(node, node == XMLNode.FACT_AUTHOR ? authors.canonical(text)
+                                    : node == XMLNode.FACT_TYPE ? types.canonical(text) : text.toString());
+                    }
+                    current = null;
+                    text.setLength(0);
+                    break;
+                default:
+                    break;
+                }
+            }
+        } catch (XMLStreamException e) {
+            e.printStackTrace(); // Stop at the malformed part, like Parser does
+            failed = true;
+        }
+        close();
+        return null;
+    }
+
+    /**
+     * Checks whether the accumulated text is empty or just whitespace, without creating a String.
+     *
+     * @param sequence The text to check
+     * @return True if the text is blank
+     */
+    private static boolean isBlank(CharSequence sequence) {
+        for (int i = 0; i < sequence.length(); i++) {
+            if (!Character.isWhitespace(sequence.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,136 @@
+package newfacts;
+
+import java.util.Arrays;
+
+/**
+ * A bounded dictionary of repeated field values, such as authors and fact types.
+ * Each distinct value is kept once and gets a dense int id, so parsers can share one
+ * String instance between all facts with the same value, and columnar structures can
+ * store the id instead of the value.
+ * <p>
+ * Values are looked up by their characters, so a value already in the dictionary does
+ * not create a new String. The dictionary stops growing at its capacity, and values
+ * longer than its maximum length are never added; such values are returned as new
+ * strings without an id. The dictionary is not thread-safe.
+ */
+class StringDictionary {
+    static final int DEFAULT_CAPACITY = 1 << 16; // Default largest number of values
+    static final int MAX_LENGTH = 256; // Default longest value kept in the dictionary
+
+    private final int capacity; // Largest number of values
+    private final int maxLength; // Longest value kept in the dictionary
+    private int[] slots; // Open-addressing table of value ids plus one, 0 for an empty slot
+    private String[] values = new String[16]; // Values by id
+    private int size = 0; // Number of values
+
+    /**
+     * Constructs a dictionary of at most {@link #DEFAULT_CAPACITY} values of up to
+     * {@link #MAX_LENGTH} characters.
+     */
+    StringDictionary() {
+        this(DEFAULT_CAPACITY, MAX_LENGTH);
+    }
+
+    /**
+     * Constructs a dictionary with the given bounds.
+     *
+     * @param capacity  The largest number of values.
+     * @param maxLength The longest value kept in the dictionary.
+     */
+    StringDictionary(int capacity, int maxLength) {
+        this.capacity = capacity;
+        this.maxLength = maxLength;
+        this.slots = new int[32];
+    }
+
+    /**
+     * Gets the shared instance of a value.
+     *
+     * @param chars The characters of the value.
+     * @return The String in the dictionary equal to the value, or a new String if the
+     *         value cannot be added.
+     */
+    String canonical(CharSequence chars) {
+        int id = idOf(chars);
+        return id >= 0 ? values[id] : chars.toString();
+    }
+
+    /**
+     * Gets the id of a value, adding the value if it is new.
+     *
+     * @param chars The characters of the value.
+     * @return The id of the value, or -1 if the dictionary is full or the value too long.
+     */
+    int idOf(CharSequence chars) {
+        if (chars.length() > maxLength)
+            return -1;
+        int hash = hash(chars);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0)
+                break;
+            if (contentEquals(values[id], chars))
+                return id;
+        }
+        if (size >= capacity)
+            return -1;
+        if (size == values.length)
+            values = Arrays.copyOf(values, size * 2);
+        values[size] = chars.toString();
+        if ((size + 1) * 2 > slots.length)
+            rehash(slots.length * 2);
+        insert(hash, size);
+        return size++;
+    }
+
+    /**
+     * Gets the value with the given id.
+     *
+     * @param id The id of the value.
+     * @return The value.
+     */
+    String get(int id) {
+        return values[id];
+    }
+
+    /**
+     * Gets the number of values in the dictionary.
+     *
+     * @return The number of values.
+     */
+    int size() {
+        return size;
+    }
+
+    private void rehash(int length) {
+        slots = new int[length];
+        for (int id = 0; id < size; id++)
+            insert(hash(values[id]), id);
+    }
+
+    private void insert(int hash, int id) {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0)
+            slot = (slot + 1) & mask;
+        slots[slot] = id + 1;
+    }
+
+    private static int hash(CharSequence chars) {
+        int h = 0;
+        for (int i = 0; i < chars.length(); i++)
+            h = 31 * h + chars.charAt(i);
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean contentEquals(String value, CharSequence chars) {
+        if (value.length() != chars.length())
+            return false;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) != chars.charAt(i))
+                return false;
+        }
+        return true;
+    }
+}
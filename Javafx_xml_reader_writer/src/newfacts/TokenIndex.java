@@ -0,0 +1,113 @@
+package newfacts;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An inverted index from lower-cased words to the ids of the facts containing them,
+ * kept separately for the author, text and type of the facts.
+ */
+class TokenIndex {
+    private static final int[] NONE = new int[0];
+
+    // One word -> posting list map per searchable field
+    private final Map<FactSearchMode, Map<String, PostingList>> fields = new EnumMap<>(FactSearchMode.class);
+
+    /**
+     * Constructs an empty index.
+     */
+    TokenIndex() {
+        fields.put(FactSearchMode.AUTHOR, new HashMap<>());
+        fields.put(FactSearchMode.TEXT, new HashMap<>());
+        fields.put(FactSearchMode.TYPE, new HashMap<>());
+    }
+
+    /**
+     * Adds the words of a fact to the index.
+     *
+     * @param id   The id of the fact.
+     * @param fact The fact to be indexed.
+     */
+    void add(int id, Fact fact) {
+        addField(FactSearchMode.AUTHOR, id, fact.getAuthorKey());
+        addField(FactSearchMode.TEXT, id, fact.getTextKey());
+        addField(FactSearchMode.TYPE, id, fact.getTypeKey());
+    }
+
+    /**
+     * Finds the facts that contain the given word.
+     *
+     * @param word The lower-cased word, as returned by {@link #asWord(String)}.
+     * @param mode The field to search, or ALL for any field.
+     * @return The sorted ids of the matching facts.
+     */
+    int[] lookup(String word, FactSearchMode mode) {
+        if (mode != FactSearchMode.ALL)
+            return lookupField(mode, word);
+        int[] ids = lookupField(FactSearchMode.AUTHOR, word);
+        ids = PostingList.union(ids, lookupField(FactSearchMode.TEXT, word));
+        return PostingList.union(ids, lookupField(FactSearchMode.TYPE, word));
+    }
+
+    /**
+     * Checks whether a search term is a single word the index can answer.
+     *
+     * @param term The search term.
+     * @return The lower-cased word, or null if the term is not exactly one word.
+     */
+    static String asWord(String term) {
+        String word = term.trim().toLowerCase();
+        if (word.isEmpty())
+            return null;
+        for (int i = 0; i < word.length(); i++) {
+            if (!Character.isLetterOrDigit(word.charAt(i)))
+                return null;
+        }
+        return word;
+    }
+
+    /**
+     * Checks whether a value contains the given word, with the same word
+     * boundaries as the index. Used when the list is not indexed.
+     *
+     * @param lower The lower-cased field value.
+     * @param word  The lower-cased word, as returned by {@link #asWord(String)}.
+     * @return True if the value contains the word.
+     */
+    static boolean containsWord(String lower, String word) {
+        if (lower == null)
+            return false;
+        int from = 0;
+        int i;
+        while ((i = lower.indexOf(word, from)) >= 0) {
+            int end = i + word.length();
+            if ((i == 0 || !Character.isLetterOrDigit(lower.charAt(i - 1)))
+                    && (end == lower.length() || !Character.isLetterOrDigit(lower.charAt(end))))
+                return true;
+            from = i + 1;
+        }
+        return false;
+    }
+
+    private int[] lookupField(FactSearchMode mode, String word) {
+        PostingList postings = fields.get(mode).get(word);
+        return postings == null ? NONE : postings.toArray();
+    }
+
+    private void addField(FactSearchMode mode, int id, String lower) {
+        if (lower == null)
+            return;
+        Map<String, PostingList> words = fields.get(mode);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean letter = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                words.computeIfAbsent(lower.substring(start, i), w -> new PostingList()).add(id);
+                start = -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package newfacts;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A substring index over the lower-cased author, text and type of facts. Every run of
+ * three characters maps to the ids of the facts containing it, so the facts that can
+ * contain a search term are found by intersecting the posting lists of its trigrams.
+ * The candidates still have to be verified, since the trigrams may occur apart.
+ */
+class TrigramIndex {
+    static final int GRAM = 3; // Length of the indexed character runs
+    private static final int[] NONE = new int[0];
+
+    // One trigram -> posting list map per searchable field
+    private final Map<FactSearchMode, Map<Long, PostingList>> fields = new EnumMap<>(FactSearchMode.class);
+
+    /**
+     * Constructs an empty index.
+     */
+    TrigramIndex() {
+        fields.put(FactSearchMode.AUTHOR, new HashMap<>());
+        fields.put(FactSearchMode.TEXT, new HashMap<>());
+        fields.put(FactSearchMode.TYPE, new HashMap<>());
+    }
+
+    /**
+     * Adds the trigrams of a fact to the index.
+     *
+     * @param id   The id of the fact.
+     * @param fact The fact to be indexed.
+     */
+    void add(int id, Fact fact) {
+        addField(FactSearchMode.AUTHOR, id, fact.getAuthorKey());
+        addField(FactSearchMode.TEXT, id, fact.getTextKey());
+        addField(FactSearchMode.TYPE, id, fact.getTypeKey());
+    }
+
+    /**
+     * Finds the facts whose field may contain the given term.
+     *
+     * @param term The lower-cased search term, at least {@link #GRAM} characters long.
+     * @param mode The field to search, other than ALL.
+     * @return The sorted ids of the candidate facts.
+     */
+    int[] candidates(String term, FactSearchMode mode) {
+        Map<Long, PostingList> grams = fields.get(mode);
+        List<PostingList> lists = new ArrayList<>();
+        for (int i = 0; i + GRAM <= term.length(); i++) {
+            PostingList postings = grams.get(key(term, i));
+            if (postings == null)
+                return NONE;
+            if (!lists.contains(postings))
+                lists.add(postings);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size(), b.size())); // Start with the most selective trigram
+        return PostingList.intersect(lists);
+    }
+
+    private void addField(FactSearchMode mode, int id, String lower) {
+        if (lower == null)
+            return;
+        Map<Long, PostingList> grams = fields.get(mode);
+        for (int i = 0; i + GRAM <= lower.length(); i++) {
+            grams.computeIfAbsent(key(lower, i), k -> new PostingList()).add(id);
+        }
+    }
+
+    /**
+     * Packs the three characters starting at the given position into one key.
+     */
+    private static Long key(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+}
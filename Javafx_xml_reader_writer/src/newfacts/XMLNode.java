@@ -1,5 +1,8 @@
 package newfacts;
 
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
  * The XMLNode enum represents different XML nodes that are used in parsing XML files
  * containing facts. Each enum value corresponds to a specific XML node name.
@@ -13,6 +16,15 @@ public enum XMLNode {
 
     private final String nodeName; // The name of the XML node
 
+    // Case-insensitive lookup from node name to node, built once so lookups do not copy values()
+    private static final Map<String, XMLNode> BY_NAME = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        for (XMLNode node : values()) {
+            BY_NAME.put(node.nodeName, node);
+        }
+    }
+
     /**
      * Constructor for XMLNode enum. 
      *
@@ -31,6 +43,16 @@ public enum XMLNode {
         return nodeName;
     }
 
+    /**
+     * Gets the XMLNode with the given node name, ignoring case.
+     *
+     * @param nodeName The name of the XML node
+     * @return The matching XMLNode, or null if not found
+     */
+    public static XMLNode fromNodeName(String nodeName) {
+        return nodeName == null ? null : BY_NAME.get(nodeName);
+    }
+
     /**
      * Gets the value corresponding to a specific XML node name.
      *
@@ -38,11 +60,7 @@ public enum XMLNode {
      * @return The value corresponding to the XML node name, or an empty string if not found
      */
     public static String getValueForNode(String nodeName) {
-        for (XMLNode node : XMLNode.values()) { // Iterate through all XMLNode values
-            if (node.getNodeName().equalsIgnoreCase(nodeName)) { // Check if the node name matches
-                return node.getNodeName(); // Return the node name as the value
-            }
-        }
-        return ""; // Return an empty string if node name not found
+        XMLNode node = fromNodeName(nodeName);
+        return node == null ? "" : node.getNodeName(); // Return an empty string if node name not found
     }
 }
@@ -1,7 +1,15 @@
 package newfacts;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -28,13 +36,27 @@ public class XMLWriter {
     public Document document; // XML document object
     private Transformer transformer; // Transformer for saving changes
 
+    private static final String CLOSING_TAG = "</" + XMLNode.FACT_LIST.getNodeName() + ">"; // Root closing tag
+    private static final int TAIL_WINDOW = 4096; // Bytes read from the end of the file to locate the closing tag
+
     /**
      * Constructor to initialize XMLWriter with a custom input file path.
      * @param filePath The path to the XML file to be manipulated.
      */
     public XMLWriter(String filePath) {
+        this(filePath, false);
+    }
+
+    /**
+     * Constructor to initialize XMLWriter in either DOM mode or append-only mode.
+     * In append-only mode the file is not parsed until {@link #writeAppended(List, Path)} needs it.
+     * @param filePath The path to the XML file to be manipulated.
+     * @param appendOnly True to skip loading the DOM document.
+     */
+    public XMLWriter(String filePath, boolean appendOnly) {
         this.inputFilePath = filePath;
-        OpenXMLFile(inputFilePath); // Open the XML file
+        if (!appendOnly)
+            OpenXMLFile(inputFilePath); // Open the XML file
     }
 
     /**
@@ -125,4 +147,164 @@ public class XMLWriter {
         }
         return list;
     }
-}
\ No newline at end of file
+
+    /**
+     * Write a copy of the XML file with the given facts appended to another file, leaving
+     * the original untouched. The bytes before the closing root tag are copied as they are;
+     * if the file cannot be appended to, the document is parsed and rewritten instead.
+     * The copy is flushed to the storage device before this method returns.
+     * @param facts The facts to be appended, in order.
+     * @param target The file to be written; it is replaced if it exists.
+     * @throws IOException If the XML file cannot be read or the target cannot be written.
+     */
+    public void writeAppended(List<Fact> facts, Path target) throws IOException {
+        try (FileChannel source = FileChannel.open(Paths.get(inputFilePath), StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            long closingTag = findClosingTag(source);
+            if (closingTag >= 0) {
+                for (long position = 0; position < closingTag;) {
+                    position += source.transferTo(position, closingTag - position, out);
+                }
+                StringBuilder fragment = new StringBuilder();
+                for (Fact fact : facts) {
+                    appendFragment(fragment, fact);
+                }
+                fragment.append(CLOSING_TAG);
+                out.write(ByteBuffer.wrap(fragment.toString().getBytes(StandardCharsets.UTF_8)));
+                out.force(true);
+                return;
+            }
+        }
+        writeDocument(facts, target);
+    }
+
+    /**
+     * Rewrite the whole document with the given facts added to the root node.
+     * @param facts The facts to be added.
+     * @param target The file to be written.
+     * @throws IOException If the document cannot be parsed or written.
+     */
+    private void writeDocument(List<Fact> facts, Path target) throws IOException {
+        if (document == null)
+            OpenXMLFile(inputFilePath);
+        if (document == null)
+            throw new IOException("Could not parse " + inputFilePath);
+        addFacts(facts);
+        try (FileOutputStream out = new FileOutputStream(target.toFile())) {
+            transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.INDENT, "no");
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
+            transformer.transform(new DOMSource(document), new StreamResult(out));
+            out.getFD().sync();
+        } catch (TransformerException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Add facts to the root node of the XML document as fact elements.
+     * @param facts The facts to be added.
+     */
+    public void addFacts(List<Fact> facts) {
+        List<String> tags = Arrays.asList(XMLNode.FACT_AUTHOR.getNodeName(),
+                XMLNode.FACT_TEXT.getNodeName(), XMLNode.FACT_TYPE.getNodeName());
+        for (Fact fact : facts) {
+            List<String> values = Arrays.asList(fact.getAuthor(), fact.getText(), fact.getType());
+            Element parent = createElement(XMLNode.FACT.getNodeName());
+            addChildern(tags, values, parent);
+            addToRootNode(parent);
+        }
+    }
+
+    /**
+     * Serialize a fact as a fact element, using the same child order as the DOM writer.
+     * @param sb The builder to append the escaped XML fragment to.
+     * @param fact The fact to be serialized.
+     */
+    static void appendFragment(StringBuilder sb, Fact fact) {
+        sb.append('<').append(XMLNode.FACT.getNodeName()).append('>');
+        appendElement(sb, XMLNode.FACT_AUTHOR, fact.getAuthor());
+        appendElement(sb, XMLNode.FACT_TEXT, fact.getText());
+        appendElement(sb, XMLNode.FACT_TYPE, fact.getType());
+        sb.append("</").append(XMLNode.FACT.getNodeName()).append('>');
+    }
+
+    private static void appendElement(StringBuilder sb, XMLNode node, String value) {
+        sb.append('<').append(node.getNodeName()).append('>');
+        escape(sb, value);
+        sb.append("</").append(node.getNodeName()).append('>');
+    }
+
+    /**
+     * Escape the markup characters of a text node.
+     * @param sb The builder to append to.
+     * @param value The raw text value.
+     */
+    private static void escape(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '&')
+                sb.append("&amp;");
+            else if (c == '<')
+                sb.append("&lt;");
+            else if (c == '>')
+                sb.append("&gt;");
+            else
+                sb.append(c);
+        }
+    }
+
+    /**
+     * Locate the byte offset of the closing root tag. Only whitespace may follow it.
+     * @param channel The channel of the XML file.
+     * @return The offset of the closing root tag, or -1 if the file cannot be appended to.
+     * @throws IOException If reading the file fails.
+     */
+    static long findClosingTag(FileChannel channel) throws IOException {
+        if (!isUTF8(channel))
+            return -1;
+        long size = channel.size();
+        int length = (int) Math.min(size, TAIL_WINDOW);
+        ByteBuffer tail = ByteBuffer.allocate(length);
+        long start = size - length;
+        while (tail.hasRemaining() && channel.read(tail, start + tail.position()) > 0) {
+            // Keep reading until the window is full
+        }
+        byte[] bytes = tail.array();
+        byte[] tag = CLOSING_TAG.getBytes(StandardCharsets.US_ASCII);
+        int i = length - 1;
+        while (i >= 0 && Character.isWhitespace(bytes[i])) {
+            i--;
+        }
+        int tagStart = i - tag.length + 1;
+        if (tagStart < 0)
+            return -1;
+        for (int j = 0; j < tag.length; j++) {
+            if (bytes[tagStart + j] != tag[j])
+                return -1;
+        }
+        return start + tagStart;
+    }
+
+    /**
+     * Check the XML declaration of the file. A file without an encoding declaration is UTF-8.
+     * @param channel The channel of the XML file.
+     * @return True if the file is UTF-8 encoded.
+     * @throws IOException If reading the file fails.
+     */
+    private static boolean isUTF8(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(128);
+        channel.read(head, 0);
+        String declaration = new String(head.array(), 0, head.position(), StandardCharsets.US_ASCII);
+        if (!declaration.startsWith("<?xml"))
+            return true;
+        int end = declaration.indexOf("?>");
+        declaration = end < 0 ? declaration : declaration.substring(0, end);
+        int encoding = declaration.indexOf("encoding");
+        if (encoding < 0)
+            return true;
+        String value = declaration.substring(encoding).toUpperCase();
+        return value.contains("UTF-8") || value.contains("UTF8");
+    }
+}
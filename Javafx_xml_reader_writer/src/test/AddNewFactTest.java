@@ -9,11 +9,20 @@ package test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import newfacts.Fact;
@@ -28,6 +37,8 @@ public class AddNewFactTest {
     private static FactListViewModel viewModel; // ViewModel instance for testing
     private static Random rand; // Random instance for generating test data
     private static List<Fact> TEST_LIST; // List of test facts
+    private Path dir; // Temporary directory of the tests saving many facts
+    private Path xml; // Copy of the input file in the temporary directory
     
     /**
      * Sets up the necessary objects and data before running any test methods.
@@ -40,6 +51,28 @@ public class AddNewFactTest {
         rand = new Random();
     }
 
+    /**
+     * Copies the input file into a temporary directory.
+     */
+    @BeforeEach
+    void copyInputFile() throws IOException {
+        dir = Files.createTempDirectory("facts");
+        xml = dir.resolve("facts.xml");
+        Files.copy(Path.of(INPUT_FILE), xml);
+    }
+
+    /**
+     * Deletes the temporary directory.
+     */
+    @AfterEach
+    void deleteInputFile() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList())
+                Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
     /**
      * Test case to validate adding a null fact to the ViewModel.
      */
@@ -112,6 +145,62 @@ public class AddNewFactTest {
         assertNotNull(loadedList.search(authorPredicate)); // Expect the added fact to exist in the XML file
     }
     
+    /**
+     * Test case to validate saving a batch of facts, with one invalid entry.
+     */
+    @Test
+    void testAddFactBatch() {
+        FactListViewModel batchModel = new FactListViewModel(xml.toString(), Runnable::run);
+        Fact invalid = new Fact("", "Type", "Text");
+        List<NewFactStatus> st = batchModel.saveNewFacts(Arrays.asList(getRandomFact(), invalid, getRandomFact()));
+
+        assertEquals(Arrays.asList(NewFactStatus.SAVED, NewFactStatus.AUTHOR_INVALID, NewFactStatus.SAVED), st);
+    }
+    
+    /**
+     * Test case to validate background saves, queued back to back.
+     */
+    @Test
+    void testAddFactAsync() {
+        FactListViewModel asyncModel = new FactListViewModel(xml.toString(), Runnable::run);
+        asyncModel.loadFacts(xml.toString());
+        List<CompletableFuture<NewFactStatus>> saves = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Fact fact = getRandomFact();
+            saves.add(asyncModel.saveNewFactAsync(fact.getAuthor(), fact.getText(), fact.getType()));
+        }
+        assertEquals(NewFactStatus.AUTHOR_INVALID, asyncModel.saveNewFactAsync("", "", "").join());
+        for (CompletableFuture<NewFactStatus> save : saves) {
+            assertEquals(NewFactStatus.SAVED, save.join()); // Expect every queued fact to be saved
+        }
+        asyncModel.close();
+    }
+    
+    /**
+     * Test case to ensure that concurrent saves from several view models lose no facts.
+     */
+    @Test
+    void testConcurrentSavesKeepAllFacts() throws InterruptedException {
+        final int threads = 4;
+        final int saves = 10;
+        final int before = new Parser(xml.toString()).getFactList().getSize();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            FactListViewModel model = new FactListViewModel(xml.toString(), Runnable::run);
+            writers.add(new Thread(() -> {
+                for (int i = 0; i < saves; i++) {
+                    Fact fact = getRandomFact();
+                    model.saveNewFact(fact.getAuthor(), fact.getText(), fact.getType());
+                }
+            }));
+        }
+        writers.forEach(Thread::start);
+        for (Thread writer : writers)
+            writer.join();
+
+        assertEquals(before + threads * saves, new Parser(xml.toString()).getFactList().getSize());
+    }
+    
     /**
      * Helper method to get a random fact from the test list.
      * @return A random fact from the test list.
@@ -0,0 +1,58 @@
+package test;
+
+import java.util.List;
+import java.util.Random;
+
+import newfacts.ColumnarFactList;
+import newfacts.Fact;
+import newfacts.FactList;
+import newfacts.FactSearchMode;
+
+/**
+ * Compares author and type filters on a ColumnarFactList with the same filters
+ * through FactList.search on synthetic facts. Both lists share the text strings.
+ * Usage: ColumnarBenchmark [facts] [iterations]; 10 million facts need about -Xmx6g.
+ */
+public class ColumnarBenchmark {
+
+    public static void main(String[] args) {
+        int facts = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Random rand = new Random(42);
+        FactList list = new FactList();
+        ColumnarFactList columns = new ColumnarFactList();
+        for (int i = 0; i < facts; i++) {
+            Fact fact = FactCorpusGenerator.fact(rand);
+            list.add(fact);
+            columns.add(fact);
+        }
+
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            List<Fact> expected = list.search(e -> "Alan Turing".equalsIgnoreCase(e.getAuthor())
+                    && "Fallacy".equalsIgnoreCase(e.getType()));
+            double predicateMs = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            List<Fact> actual = columns.select("Alan Turing", "Fallacy");
+            double columnarMs = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            int typeMatches = size(list.search("fall", FactSearchMode.TYPE));
+            double searchMs = (System.nanoTime() - start) / 1e6;
+
+            start = System.nanoTime();
+            int columnarTypeMatches = size(columns.search("fall", FactSearchMode.TYPE));
+            double columnarSearchMs = (System.nanoTime() - start) / 1e6;
+
+            System.out.printf("run %2d: author+type %d/%d matches, %.1f ms predicate, %.1f ms columnar; "
+                    + "type contains %d/%d matches, %.1f ms search, %.1f ms columnar%n", i, size(expected),
+                    size(actual), predicateMs, columnarMs, typeMatches, columnarTypeMatches, searchMs,
+                    columnarSearchMs);
+        }
+    }
+
+    private static int size(List<Fact> facts) {
+        return facts == null ? 0 : facts.size();
+    }
+}
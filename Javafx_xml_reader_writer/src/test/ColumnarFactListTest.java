@@ -0,0 +1,59 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import newfacts.ColumnarFactList;
+import newfacts.FactList;
+import newfacts.FactSearchMode;
+import newfacts.Parser;
+
+/**
+ * This class tests that a ColumnarFactList returns the same facts and search results
+ * as the FactList it was built from.
+ */
+class ColumnarFactListTest {
+
+    /**
+     * Tests retrieval and contains searches against the facts of the fact file.
+     */
+    @Test
+    void testSameAsFactList() {
+        FactList list = new Parser("data/facts.xml", false).getFactList();
+        ColumnarFactList columns = new ColumnarFactList(list);
+        assertEquals(list.getSize(), columns.getSize());
+        for (int i = 0; i < list.getSize(); i++)
+            assertEquals(list.get(i).toString(), columns.get(i).toString());
+        assertNull(columns.get(columns.getSize()));
+
+        for (String term : new String[] { "software", "GLASS", "fall", "e", "zzzz" }) {
+            for (FactSearchMode mode : FactSearchMode.values())
+                assertEquals(String.valueOf(list.search(term, mode)), String.valueOf(columns.search(term, mode)),
+                        term + " " + mode);
+        }
+    }
+
+    /**
+     * Tests author and type selection against a predicate search on generated facts.
+     */
+    @Test
+    void testSelect() {
+        Random rand = new Random(7);
+        FactList list = new FactList();
+        ColumnarFactList columns = new ColumnarFactList();
+        for (int i = 0; i < 2000; i++) {
+            list.add(FactCorpusGenerator.fact(rand));
+            columns.add(list.get(i));
+        }
+
+        assertEquals(String.valueOf(list.search(e -> e.getAuthor().equalsIgnoreCase("alan turing")
+                && e.getType().equalsIgnoreCase("FALLACY"))), String.valueOf(columns.select("alan turing", "FALLACY")));
+        assertEquals(String.valueOf(list.search(e -> e.getType().equals("Art"))),
+                String.valueOf(columns.select(null, "Art")));
+        assertNull(columns.select("Nobody", null));
+    }
+}
@@ -0,0 +1,227 @@
+package test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import newfacts.FactList;
+import newfacts.FactListViewModel;
+import newfacts.FactScanner;
+import newfacts.FactSearchMode;
+import newfacts.Handler;
+import newfacts.ParallelParser;
+import newfacts.Parser;
+
+/**
+ * Benchmark suite for the main paths of the application, on synthetic fact files of
+ * several sizes (from 1K up to 10M facts, given enough heap): Parser throughput, SAX and
+ * FactScanner throughput, ParallelParser throughput on one thread and on all threads,
+ * FactList.searchAll and search for each mode (with
+ * and without the search index), saveNewFact latency and getRandom.
+ * <p>
+ * Every benchmark is warmed up, then measured over several timed iterations. Besides
+ * the score, each line reports the bytes allocated per operation by the benchmark
+ * thread (work done by the writer thread of saves is not included), and the collections
+ * and collection time during measurement. Scores can be saved and compared with a
+ * baseline, so a change can be checked against the results before it.
+ * <p>
+ * Usage: FactBenchmark [--facts 1000,100000,...] [--warmup n] [--iterations n]
+ * [--millis ms] [--filter regex] [--save file] [--baseline file]
+ */
+public class FactBenchmark {
+    private static volatile int sink; // Consumes results so they are not optimized away
+
+    private final int warmup; // Warm-up iterations per benchmark
+    private final int iterations; // Measured iterations per benchmark
+    private final long millis; // Duration of one iteration
+    private final Pattern filter; // Benchmarks to run
+    private final Properties baseline; // Scores of an earlier run, or empty
+    private final Map<String, Double> scores = new LinkedHashMap<>(); // Scores of this run
+    private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+            .getThreadMXBean();
+
+    private FactBenchmark(int warmup, int iterations, long millis, Pattern filter, Properties baseline) {
+        this.warmup = warmup;
+        this.iterations = iterations;
+        this.millis = millis;
+        this.filter = filter;
+        this.baseline = baseline;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2)
+            options.put(args[i], args[i + 1]);
+        int[] sizes = Arrays.stream(options.getOrDefault("--facts", "1000,100000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        Properties baseline = new Properties();
+        if (options.containsKey("--baseline")) {
+            try (Reader in = Files.newBufferedReader(Path.of(options.get("--baseline")))) {
+                baseline.load(in);
+            }
+        }
+        FactBenchmark benchmark = new FactBenchmark(Integer.parseInt(options.getOrDefault("--warmup", "3")),
+                Integer.parseInt(options.getOrDefault("--iterations", "5")),
+                Long.parseLong(options.getOrDefault("--millis", "1000")),
+                Pattern.compile(options.getOrDefault("--filter", ".*")), baseline);
+
+        System.out.printf("%-28s %10s %14s %10s %8s %14s %6s %8s %9s%n", "benchmark", "facts", "score", "error",
+                "unit", "alloc B/op", "gc", "gc ms", "vs base");
+        for (int facts : sizes)
+            benchmark.run(facts);
+
+        if (options.containsKey("--save")) {
+            Properties saved = new Properties();
+            benchmark.scores.forEach((name, score) -> saved.setProperty(name, Double.toString(score)));
+            try (Writer out = Files.newBufferedWriter(Path.of(options.get("--save")))) {
+                saved.store(out, "FactBenchmark scores");
+            }
+        }
+    }
+
+    /**
+     * Runs every benchmark on a generated file with the given number of facts.
+     */
+    private void run(int facts) throws Exception {
+        Path dir = Files.createTempDirectory("factbench");
+        Path file = dir.resolve("facts.xml");
+        try {
+            FactCorpusGenerator.write(file, facts, 42);
+            double mb = Files.size(file) / (1024.0 * 1024.0);
+            measure("parse", facts, () -> new Parser(file.toString(), false).getFactList(), mb, "MB/s", false);
+            measure("parse.sax", facts, () -> {
+                Handler handler = new Handler();
+                SAXParserFactory.newInstance().newSAXParser().parse(file.toFile(), handler);
+                return handler.getList();
+            }, mb, "MB/s", false);
+            measure("parse.scanner", facts, () -> FactScanner.scan(file.toString()), mb, "MB/s", false);
+            for (int threads : IntStream.of(1, Runtime.getRuntime().availableProcessors()).distinct().toArray()) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    ParallelParser parser = new ParallelParser(pool);
+                    measure("parse.chunks." + threads, facts, () -> parser.parse(file.toString()), mb, "MB/s", false);
+                } finally {
+                    pool.shutdown();
+                }
+            }
+
+            FactList list = new Parser(file.toString(), false).getFactList();
+            FactList indexed = new Parser(file.toString(), false).getFactList();
+            indexed.enableIndex();
+            measure("searchAll", facts, () -> list.searchAll("quality"), 1, "ops/s", false);
+            measure("searchAll.indexed", facts, () -> indexed.searchAll("quality"), 1, "ops/s", false);
+            for (FactSearchMode mode : FactSearchMode.values()) {
+                String term = mode == FactSearchMode.AUTHOR ? "curie" : mode == FactSearchMode.TYPE ? "fall" : "software";
+                measure("search." + mode, facts, () -> list.search(term, mode), 1, "ops/s", false);
+                measure("search." + mode + ".indexed", facts, () -> indexed.search(term, mode), 1, "ops/s", false);
+            }
+            measure("getRandom", facts, list::getRandom, 1, "ops/s", false);
+
+            FactListViewModel viewModel = new FactListViewModel(file.toString(), Runnable::run);
+            int[] saved = { 0 };
+            measure("saveNewFact", facts, () -> viewModel.saveNewFact("Benchmark", "Saved fact " + saved[0]++, "Fact"),
+                    1, "us/op", true);
+            viewModel.close();
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path path : files.toList())
+                    Files.delete(path);
+            }
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * Measures one benchmark and prints its line.
+     *
+     * @param name    The name of the benchmark.
+     * @param facts   The number of facts of the corpus.
+     * @param op      The operation to be measured.
+     * @param units   The units of work per operation, such as megabytes parsed.
+     * @param unit    The unit of the score.
+     * @param latency True to score the time per operation in microseconds instead of a rate.
+     */
+    private void measure(String name, int facts, Callable<Object> op, double units, String unit, boolean latency)
+            throws Exception {
+        if (!filter.matcher(name).matches())
+            return;
+        for (int i = 0; i < warmup; i++)
+            iteration(op);
+
+        long thread = Thread.currentThread().getId();
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        long[] gc = gcTotals();
+        long operations = 0;
+        double[] rates = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long[] result = iteration(op);
+            operations += result[0];
+            rates[i] = result[0] * 1e9 / result[1];
+        }
+        double allocated = (double) (threads.getThreadAllocatedBytes(thread) - bytes) / operations;
+        long[] gcAfter = gcTotals();
+
+        double[] values = Arrays.stream(rates).map(r -> latency ? 1e6 / r : r * units).toArray();
+        double mean = Arrays.stream(values).average().orElse(0);
+        double error = Math.sqrt(Arrays.stream(values).map(v -> (v - mean) * (v - mean)).sum()
+                / Math.max(1, values.length - 1));
+        String key = name + "." + facts;
+        scores.put(key, mean);
+        String change = "";
+        if (baseline.containsKey(key)) {
+            double base = Double.parseDouble(baseline.getProperty(key));
+            change = String.format("%+8.1f%%", (mean - base) / base * 100);
+        }
+        System.out.printf("%-28s %10d %14.3f %10.3f %8s %14.0f %6d %8d %9s%n", name, facts, mean, error, unit,
+                allocated, gcAfter[0] - gc[0], gcAfter[1] - gc[1], change);
+    }
+
+    /**
+     * Runs the operation repeatedly for one iteration.
+     *
+     * @return The number of operations and the elapsed nanoseconds.
+     */
+    private long[] iteration(Callable<Object> op) throws Exception {
+        long start = System.nanoTime();
+        long deadline = start + millis * 1_000_000;
+        long operations = 0;
+        long now;
+        do {
+            Object result = op.call();
+            sink += result == null ? 0 : System.identityHashCode(result);
+            operations++;
+            now = System.nanoTime();
+        } while (now < deadline);
+        return new long[] { operations, now - start };
+    }
+
+    /**
+     * Sums the collection counts and times of all collectors.
+     */
+    private static long[] gcTotals() {
+        long count = 0;
+        long time = 0;
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        for (GarbageCollectorMXBean collector : collectors) {
+            count += Math.max(0, collector.getCollectionCount());
+            time += Math.max(0, collector.getCollectionTime());
+        }
+        return new long[] { count, time };
+    }
+}
@@ -0,0 +1,83 @@
+package test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import newfacts.Fact;
+
+/**
+ * Generates synthetic fact files with the facts.xml schema, for benchmarks.
+ * Authors and types are drawn from small pools, so they repeat the way they do in real data.
+ */
+public class FactCorpusGenerator {
+    private static final String[] AUTHORS = { "Robert L. Glass", "Marie Curie", "Alan Turing", "Pablo Picasso",
+            "Georgia O'Keeffe", "Charles Dickens", "Emily Dickinson", "Stephen Hawking", "Leonardo da Vinci",
+            "Vincent van Gogh" };
+    private static final String[] TYPES = { "Fact", "Fallacy", "Science", "Art", "Literature" };
+    private static final String[] WORDS = { "quality", "software", "testing", "productivity", "coverage",
+            "tools", "automation", "requirements", "schedule", "reliability", "radiation", "painting",
+            "machines", "algorithm", "gravity", "flowers", "proportions", "soul", "times", "question" };
+
+    /**
+     * Writes a fact file with the given number of facts.
+     *
+     * @param path  The file to be written.
+     * @param facts The number of facts.
+     * @param seed  The seed of the random generator, so runs are repeatable.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path path, int facts, long seed) throws IOException {
+        Random rand = new Random(seed);
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?><fact-list>\n");
+            for (int i = 0; i < facts; i++) {
+                Fact fact = fact(rand);
+                out.write("    <fact>\n        <fact-text>");
+                out.write(fact.getText());
+                out.write("</fact-text>\n        <author>");
+                out.write(fact.getAuthor());
+                out.write("</author>\n        <fact-type>");
+                out.write(fact.getType());
+                out.write("</fact-type>\n    </fact>\n");
+            }
+            out.write("</fact-list>");
+        }
+    }
+
+    /**
+     * Creates a random fact, drawing its text, author and type in that order.
+     *
+     * @param rand The random generator.
+     * @return The fact.
+     */
+    public static Fact fact(Random rand) {
+        String text = text(rand);
+        String author = AUTHORS[rand.nextInt(AUTHORS.length)];
+        return new Fact(author, TYPES[rand.nextInt(TYPES.length)], text);
+    }
+
+    /**
+     * Creates a random sentence of 6 to 20 words.
+     *
+     * @param rand The random generator.
+     * @return The sentence.
+     */
+    public static String text(Random rand) {
+        StringBuilder sb = new StringBuilder();
+        int words = 6 + rand.nextInt(15);
+        for (int i = 0; i < words; i++) {
+            if (i > 0)
+                sb.append(' ');
+            sb.append(WORDS[rand.nextInt(WORDS.length)]);
+        }
+        return sb.append('.').toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        write(Path.of(args[0]), Integer.parseInt(args[1]), 42);
+    }
+}
@@ -0,0 +1,128 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import newfacts.Fact;
+import newfacts.FactList;
+import newfacts.FactQuery;
+import newfacts.FactSearchMode;
+import newfacts.ObservableFactList;
+
+/**
+ * This class tests that a FactList can be read and searched by several threads while
+ * other threads append facts, and that an ObservableFactList mirrors the appends.
+ */
+class FactListConcurrencyTest {
+    private static final int WRITERS = 4;
+    private static final int FACTS_PER_WRITER = 5000;
+
+    /**
+     * Tests concurrent appends, reads and indexed searches.
+     */
+    @Test
+    void testConcurrentReadsWhileAppending() throws Exception {
+        FactList list = new FactList();
+        list.enableIndex();
+        List<Fact> mirrored = new ArrayList<>();
+        ObservableFactList observable = new ObservableFactList(list, Runnable::run);
+        list.addListener(added -> {
+            synchronized (mirrored) {
+                mirrored.addAll(added);
+            }
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + 2);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            final long seed = w;
+            writers.add(pool.submit(() -> {
+                Random rand = new Random(seed);
+                for (int i = 0; i < FACTS_PER_WRITER; i++) {
+                    if (i % 10 == 0)
+                        list.addAll(List.of(FactCorpusGenerator.fact(rand), FactCorpusGenerator.fact(rand)));
+                    else
+                        list.add(FactCorpusGenerator.fact(rand));
+                }
+            }));
+        }
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            readers.add(pool.submit(() -> {
+                Random rand = new Random();
+                while (writing.get()) {
+                    int size = list.getSize();
+                    if (size > 0)
+                        assertNotNull(list.get(rand.nextInt(size)));
+                    list.search("software", FactSearchMode.TEXT);
+                    list.searchTerm("quality", FactSearchMode.ALL);
+                    list.query(new FactQuery().typeIs("Fact").textContains("testing")).count();
+                }
+            }));
+        }
+        for (Future<?> writer : writers)
+            writer.get(60, TimeUnit.SECONDS);
+        writing.set(false);
+        for (Future<?> reader : readers)
+            reader.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        int expected = WRITERS * (FACTS_PER_WRITER + FACTS_PER_WRITER / 10);
+        assertEquals(expected, list.getSize());
+        assertEquals(expected, mirrored.size());
+        assertEquals(expected, observable.getFacts().size());
+        for (int i = 0; i < expected; i++)
+            assertTrue(list.get(i) == mirrored.get(i) && list.get(i) == observable.getFacts().get(i));
+
+        int scanned = list.search(e -> e.getTextKey().contains("software")).size();
+        assertEquals(scanned, list.search("software", FactSearchMode.TEXT).size());
+        observable.close();
+    }
+
+    /**
+     * Tests that facts appended while the index is built are found by indexed searches.
+     */
+    @Test
+    void testEnableIndexWhileAppending() throws Exception {
+        FactList list = new FactList();
+        Random rand = new Random(1);
+        for (int i = 0; i < FACTS_PER_WRITER; i++)
+            list.add(FactCorpusGenerator.fact(rand));
+
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            final long seed = w + 2;
+            writers.add(pool.submit(() -> {
+                Random r = new Random(seed);
+                for (int i = 0; i < FACTS_PER_WRITER; i++)
+                    list.add(FactCorpusGenerator.fact(r));
+            }));
+        }
+        list.enableIndex();
+        for (Future<?> writer : writers)
+            writer.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertTrue(list.isIndexed());
+        FactList scanned = new FactList();
+        scanned.addAll(list);
+        assertEquals(scanned.search("software", FactSearchMode.TEXT).size(),
+                list.search("software", FactSearchMode.TEXT).size());
+        assertEquals(scanned.searchTerm("quality", FactSearchMode.ALL).size(),
+                list.searchTerm("quality", FactSearchMode.ALL).size());
+    }
+}
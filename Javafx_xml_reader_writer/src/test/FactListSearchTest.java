@@ -0,0 +1,202 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import newfacts.Fact;
+import newfacts.FactList;
+import newfacts.FactQuery;
+import newfacts.FactSearchMode;
+import newfacts.FactSearchResult;
+
+/**
+ * This class checks that the indexed searches of FactList return exactly the
+ * results of the linear scan, for randomly generated facts and search terms.
+ */
+class FactListSearchTest {
+    private static final int FACTS = 2000;
+    private static final int QUERIES = 500;
+    private static final String ALPHABET = "abcdefghiklmnoprstuy .'-AEIOU";
+
+    private static List<Fact> facts;
+    private static FactList indexed;
+    private static Random rand;
+
+    /**
+     * Generates the facts and an indexed list holding them.
+     */
+    @BeforeAll
+    static void setUp() {
+        rand = new Random(7);
+        facts = new ArrayList<>();
+        indexed = new FactList();
+        indexed.enableIndex();
+        facts.addAll(FactReader.readFactsFromFile("src/test/data.txt"));
+        for (int i = 0; i < FACTS; i++) {
+            facts.add(new Fact(randomString(4 + rand.nextInt(12)), randomString(3 + rand.nextInt(6)),
+                    FactCorpusGenerator.text(rand)));
+        }
+        for (int i = 0; i < facts.size(); i++) {
+            if (i % 2 == 0)
+                indexed.add(facts.get(i)); // Mix single adds and batch adds
+            else
+                indexed.addAll(List.of(facts.get(i)));
+        }
+    }
+
+    /**
+     * Tests that searchAll matches the linear scan for random terms.
+     */
+    @Test
+    void testSearchAllEquivalence() {
+        for (int i = 0; i < QUERIES; i++) {
+            String term = randomTerm();
+            assertEquals(scan(term, FactSearchMode.ALL), indexed.searchAll(term), term);
+        }
+    }
+
+    /**
+     * Tests that the per-field search matches the linear scan for random terms.
+     */
+    @Test
+    void testSearchModeEquivalence() {
+        for (int i = 0; i < QUERIES; i++) {
+            String term = randomTerm();
+            for (FactSearchMode mode : FactSearchMode.values()) {
+                assertEquals(scan(term, mode), indexed.search(term, mode), mode + " " + term);
+            }
+        }
+    }
+
+    /**
+     * Tests that a parallel search returns the matches of the sequential search, in order.
+     */
+    @Test
+    void testParallelSearchOrder() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            FactList parallel = new FactList();
+            parallel.setParallelThreshold(1);
+            parallel.setSearchPool(pool);
+            parallel.addAll(facts);
+            for (int i = 0; i < QUERIES / 10; i++) {
+                String term = randomTerm();
+                assertEquals(scan(term, FactSearchMode.ALL), parallel.searchAll(term), term);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Tests that counting, paging and sampling a lazy result agree with the linear scan.
+     */
+    @Test
+    void testQueryCursor() {
+        final int pageSize = 7;
+        for (int i = 0; i < QUERIES / 10; i++) {
+            String term = randomTerm();
+            List<Fact> expected = scan(term, FactSearchMode.ALL);
+            FactSearchResult result = indexed.query(term, FactSearchMode.ALL);
+            if (expected == null) {
+                assertEquals(0, result.count());
+                assertNull(result.sample());
+                continue;
+            }
+            assertEquals(expected.size(), result.count());
+            int page = rand.nextInt((expected.size() + pageSize - 1) / pageSize);
+            int from = page * pageSize;
+            assertEquals(expected.subList(from, Math.min(expected.size(), from + pageSize)), result.page(page, pageSize));
+            assertTrue(expected.contains(result.sample()));
+        }
+    }
+
+    /**
+     * Tests that compound queries match a filter over all facts, on a list large enough
+     * for both sparse and dense bitmap containers, with and without the search index.
+     */
+    @Test
+    void testCompoundQuery() {
+        Random generator = new Random(11);
+        List<Fact> corpus = new ArrayList<>();
+        for (int i = 0; i < 140_000; i++)
+            corpus.add(FactCorpusGenerator.fact(generator));
+        FactList plain = new FactList();
+        plain.addAll(corpus);
+        FactList withIndex = new FactList();
+        withIndex.enableIndex();
+        withIndex.addAll(corpus);
+
+        String[][] queries = { { "FALLACY", "glass", "quality" }, { "art", null, null }, { null, "curie", "gravity s" },
+                { "Fact", "o", "ty" }, { "nothing", "turing", null }, { null, null, "software" } };
+        for (String[] q : queries) {
+            FactQuery query = new FactQuery();
+            if (q[0] != null)
+                query.typeIs(q[0]);
+            if (q[1] != null)
+                query.authorContains(q[1]);
+            if (q[2] != null)
+                query.textContains(q[2]);
+            List<Fact> expected = new ArrayList<>();
+            for (Fact e : corpus) {
+                if ((q[0] == null || e.getType().equalsIgnoreCase(q[0]))
+                        && (q[1] == null || e.getAuthor().toLowerCase().contains(q[1]))
+                        && (q[2] == null || e.getText().toLowerCase().contains(q[2])))
+                    expected.add(e);
+            }
+            assertEquals(expected, plain.query(query).page(0, Integer.MAX_VALUE), String.join(",", q[0], q[1], q[2]));
+            assertEquals(expected, withIndex.query(query).page(0, Integer.MAX_VALUE));
+        }
+        assertEquals(corpus.stream().filter(e -> e.getAuthor().equals("Alan Turing")).count(),
+                plain.query(new FactQuery().authorIs("alan TURING")).count());
+    }
+
+    /**
+     * Creates a random search term: either a piece of a fact field, with random case,
+     * or random characters.
+     */
+    private static String randomTerm() {
+        if (rand.nextInt(4) == 0)
+            return randomString(1 + rand.nextInt(5));
+        Fact fact = facts.get(rand.nextInt(facts.size()));
+        String field = rand.nextBoolean() ? fact.getText() : rand.nextBoolean() ? fact.getAuthor() : fact.getType();
+        int start = rand.nextInt(field.length());
+        int end = Math.min(field.length(), start + 1 + rand.nextInt(10));
+        String term = field.substring(start, end);
+        return rand.nextBoolean() ? term.toUpperCase() : term;
+    }
+
+    private static String randomString(int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(rand.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The linear scan used by FactList before it was indexed.
+     */
+    private static List<Fact> scan(String term, FactSearchMode mode) {
+        String searchText = term.toLowerCase();
+        List<Fact> tempList = new ArrayList<>();
+        for (Fact e : facts) {
+            boolean author = e.getAuthor().toLowerCase().contains(searchText);
+            boolean text = e.getText().toLowerCase().contains(searchText);
+            boolean type = e.getType().toLowerCase().contains(searchText);
+            if ((mode == FactSearchMode.AUTHOR && author) || (mode == FactSearchMode.TEXT && text)
+                    || (mode == FactSearchMode.TYPE && type) || (mode == FactSearchMode.ALL && (author || text || type)))
+                tempList.add(e);
+        }
+        return tempList.size() > 0 ? tempList : null;
+    }
+}
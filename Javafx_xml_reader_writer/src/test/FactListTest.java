@@ -15,6 +15,7 @@ import org.junit.jupiter.api.Test;
 
 import newfacts.Fact;
 import newfacts.FactList;
+import newfacts.FactSearchMode;
 /**
  * This class provides unit tests for the FactList class.
  * It tests various functionalities such as adding facts to the list,
@@ -105,6 +106,16 @@ class FactListTest {
         assertEquals(TEST_LIST.get(0), list.get(0));
     }
 
+    /**
+     * Tests that getting the fact just past the end of the list returns null.
+     */
+    @Test
+    void testGetPastEnd() {
+        list.add(TEST_LIST.get(0));
+        assertNull(list.get(1));
+        assertNull(list.get(-1));
+    }
+
     /**
      * Tests that getting a fact from a list with multiple items returns the correct fact.
      */
@@ -203,6 +214,26 @@ class FactListTest {
         assertEquals(initialListSize + 2, list.getSize());
     }
 	
+    /**
+     * Tests that searching for a word through the index finds the same facts as
+     * searching the list without an index.
+     */
+    @Test
+    void testSearchTermIndexed() {
+    	TEST_LIST.forEach(list::add);
+    	FactList indexed = new FactList();
+    	indexed.enableIndex();
+    	TEST_LIST.forEach(indexed::add);
+
+    	for (FactSearchMode mode : FactSearchMode.values()) {
+    		for (String term : new String[] { "science", "Turing", "the", "of times", "zzz" }) {
+    			assertEquals(list.searchTerm(term, mode), indexed.searchTerm(term, mode));
+    		}
+    	}
+    	assertEquals(1, indexed.searchTerm("radioactivity", FactSearchMode.TEXT).size());
+    	assertNull(indexed.searchTerm("radioactivity", FactSearchMode.AUTHOR));
+    }
+
 	private static Fact getRandomFact() {
 		return TEST_LIST.get(rand.nextInt(TEST_LIST.size()));
 	}
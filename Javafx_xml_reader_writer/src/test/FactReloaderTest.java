@@ -0,0 +1,155 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import newfacts.Fact;
+import newfacts.FactList;
+import newfacts.FactPersistenceService;
+import newfacts.FactReloader;
+import newfacts.Parser;
+
+/**
+ * This class tests that the FactReloader appends the facts added to a fact file to the
+ * same list, and loads the file again into a new list when it changed in place.
+ */
+class FactReloaderTest {
+    private Path dir;
+    private Path xml;
+
+    /**
+     * Copies the fact file into a temporary directory.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("facts");
+        xml = dir.resolve("facts.xml");
+        Files.copy(Path.of("data/facts.xml"), xml);
+    }
+
+    /**
+     * Deletes the temporary directory.
+     */
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList())
+                Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Tests that facts appended to the XML file by another writer are added to the same list.
+     */
+    @Test
+    void testAppendedFacts() throws IOException {
+        FactReloader reloader = new FactReloader(xml.toString());
+        FactList list = reloader.getFactList();
+        assertSame(list, reloader.reload());
+
+        String content = Files.readString(xml, StandardCharsets.UTF_8);
+        int end = content.lastIndexOf("</fact-list>");
+        Files.writeString(xml, content.substring(0, end)
+                + "<fact><author>Ada Lovelace</author><fact-text>First &amp; &lt;program&gt;</fact-text>"
+                + "<fact-type>Science</fact-type></fact>"
+                + "<fact><author>B</author><fact-text>D</fact-text><fact-type>C</fact-type></fact>"
+                + content.substring(end), StandardCharsets.UTF_8);
+        assertSame(list, reloader.reload());
+        assertMatchesFile(list);
+    }
+
+    /**
+     * Tests that logged facts, facts saved to the list, and the facts of a folded log are
+     * each added once.
+     */
+    @Test
+    void testLoggedAndFoldedFacts() {
+        FactReloader reloader = new FactReloader(xml.toString());
+        FactList list = reloader.getFactList();
+        FactPersistenceService service = FactPersistenceService.forFile(xml.toString());
+
+        service.append(List.of(new Fact("A", "Logged", "One"))).join();
+        assertSame(list, reloader.reload());
+        assertMatchesFile(list);
+
+        Fact saved = new Fact("A", "Saved", "Two"); // Added to the list like the view model does
+        service.append(List.of(saved)).join();
+        list.add(saved);
+        service.append(List.of(new Fact("B", "Logged", "Three"))).join();
+        assertSame(list, reloader.reload());
+        assertMatchesFile(list);
+
+        service.compact().join();
+        assertSame(list, reloader.reload());
+        assertMatchesFile(list);
+    }
+
+    /**
+     * Tests that a file changed in place is loaded again.
+     */
+    @Test
+    void testChangedInPlace() throws IOException {
+        FactReloader reloader = new FactReloader(xml.toString());
+        FactList list = reloader.getFactList();
+        String content = Files.readString(xml, StandardCharsets.UTF_8);
+        int text = content.indexOf("<fact-text>") + "<fact-text>".length();
+        Files.writeString(xml, content.substring(0, text) + "Changed " + content.substring(text), StandardCharsets.UTF_8);
+
+        FactList reloaded = reloader.reload();
+        assertNotSame(list, reloaded);
+        assertMatchesFile(reloaded);
+    }
+
+    /**
+     * Tests that a fact rewritten in the middle of the file with the same length, away
+     * from the start and the end of the file, is loaded again.
+     */
+    @Test
+    void testSameSizeChangeInPlace() throws IOException {
+        FactReloader reloader = new FactReloader(xml.toString());
+        StringBuilder facts = new StringBuilder();
+        for (int i = 0; i < 200; i++)
+            facts.append("<fact><author>A</author><fact-text>Text ").append(i).append("</fact-text><fact-type>T</fact-type></fact>");
+        String content = Files.readString(xml, StandardCharsets.UTF_8);
+        int end = content.lastIndexOf("</fact-list>");
+        Files.writeString(xml, content.substring(0, end) + facts + content.substring(end), StandardCharsets.UTF_8);
+        FactList list = reloader.reload();
+        assertMatchesFile(list);
+
+        content = Files.readString(xml, StandardCharsets.UTF_8);
+        int text = content.indexOf("Text 100<");
+        assertTrue(text > 4096 && text < content.length() - 4096); // Outside the checked windows
+        Files.writeString(xml, content.substring(0, text) + "Edit 100" + content.substring(text + 8),
+                StandardCharsets.UTF_8);
+        FactList reloaded = reloader.reload();
+        assertNotSame(list, reloaded);
+        assertMatchesFile(reloaded);
+        assertTrue(reloaded.search(fact -> fact.getText().equals("Edit 100")) != null);
+    }
+
+    /**
+     * Asserts that a list holds the facts the Parser reads from the file and its log.
+     *
+     * @param list The list to check
+     */
+    private void assertMatchesFile(FactList list) {
+        FactList expected = new Parser(xml.toString(), false).getFactList();
+        assertEquals(expected.getSize(), list.getSize());
+        for (int i = 0; i < list.getSize(); i++)
+            assertEquals(expected.get(i).toString(), list.get(i).toString());
+    }
+}
@@ -0,0 +1,99 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import newfacts.Fact;
+import newfacts.FactList;
+import newfacts.FactSampler;
+
+/**
+ * This class tests the shuffled and weighted draws of the FactSampler.
+ */
+class FactSamplerTest {
+
+    private static FactList generate(int facts) {
+        Random rand = new Random(3);
+        FactList list = new FactList();
+        for (int i = 0; i < facts; i++)
+            list.add(FactCorpusGenerator.fact(rand));
+        return list;
+    }
+
+    /**
+     * Tests that shuffled iteration returns every fact once per round, including
+     * facts added during the round.
+     */
+    @Test
+    void testShuffledWithoutRepeats() {
+        FactList list = generate(500);
+        FactSampler sampler = new FactSampler(list);
+        Set<Fact> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < 200; i++)
+            assertTrue(seen.add(sampler.nextShuffled()));
+        list.add(new Fact("Late", "Fact", "Added during the round"));
+        for (int i = 0; i < 301; i++)
+            assertTrue(seen.add(sampler.nextShuffled()));
+        assertEquals(501, seen.size());
+
+        seen.clear();
+        for (int i = 0; i < 501; i++)
+            assertTrue(seen.add(sampler.nextShuffled())); // A new round returns every fact again
+        assertNull(new FactSampler(new FactList()).nextShuffled());
+    }
+
+    /**
+     * Tests that weighted draws only return weighted types, in about the given proportion.
+     */
+    @Test
+    void testWeighted() {
+        FactSampler sampler = new FactSampler(generate(5000));
+        int art = 0;
+        for (int i = 0; i < 10_000; i++) {
+            String type = sampler.nextWeighted(Map.of("ART", 3.0, "fallacy", 1.0, "Nothing", 5.0)).getType();
+            assertTrue(type.equals("Art") || type.equals("Fallacy"), type);
+            if (type.equals("Art"))
+                art++;
+        }
+        assertTrue(art > 7000 && art < 8000, "Art drawn " + art + " times");
+        assertNull(sampler.nextWeighted(Map.of("Nothing", 1.0)));
+    }
+
+    /**
+     * Tests that threads drawing from one shuffled order together never get the same fact twice.
+     */
+    @Test
+    void testConcurrentShuffled() throws InterruptedException {
+        FactList list = generate(4000);
+        FactSampler sampler = new FactSampler(list);
+        Set<Fact> seen = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    if (!seen.add(sampler.nextShuffled()))
+                        duplicates.incrementAndGet();
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(0, duplicates.get());
+        assertEquals(4000, seen.size());
+    }
+}
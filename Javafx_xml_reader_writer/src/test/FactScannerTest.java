@@ -0,0 +1,209 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import newfacts.Fact;
+import newfacts.FactList;
+import newfacts.FactScanner;
+import newfacts.Handler;
+
+/**
+ * This class tests that the FactScanner reads the same facts as the SAX parser with the
+ * Handler, and that it leaves every document it does not fully support to the Parser.
+ */
+class FactScannerTest {
+    private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+
+    private Path dir;
+    private Path xml;
+
+    /**
+     * Creates a temporary directory.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("facts");
+        xml = dir.resolve("facts.xml");
+    }
+
+    /**
+     * Deletes the temporary directory.
+     */
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList())
+                Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Tests the fact file of the application and a generated corpus.
+     */
+    @Test
+    void testFactFiles() throws IOException {
+        Files.copy(Path.of("data/facts.xml"), xml);
+        assertConforms();
+        Files.delete(xml);
+        FactCorpusGenerator.write(xml, 5000, 7);
+        assertConforms();
+    }
+
+    /**
+     * Tests entity and character references, CDATA sections, comments and non-ASCII text.
+     */
+    @Test
+    void testDecodedText() throws IOException {
+        write("<fact-list>"
+                + "<fact><author>Ad&amp;a &lt;L&gt; &quot;&apos;</author><fact-type>T&#233;&#x1F600;</fact-type>"
+                + "<fact-text>a <![CDATA[<b> & ]] ]]>b<!-- c -->d</fact-text></fact>"
+                + "<fact><author>Ren\u00e9 \u00c9\u4e16\ud83d\ude00</author><fact-text>\u00a0</fact-text></fact>"
+                + "</fact-list>");
+        assertConforms();
+    }
+
+    /**
+     * Tests line end normalization, and whitespace kept in a value or making it blank.
+     */
+    @Test
+    void testWhitespace() throws IOException {
+        write("<fact-list>\r\n<fact>\r\n<author>  \r\n\t</author><fact-type>&#13;</fact-type>"
+                + "<fact-text> one\r\ntwo\rthree <![CDATA[\r\n]]></fact-text>\r\n</fact>\r\n</fact-list>\r\n");
+        assertConforms();
+    }
+
+    /**
+     * Tests empty elements, mixed case names, repeated fields, and markup around the fact list.
+     */
+    @Test
+    void testStructure() throws IOException {
+        Files.write(xml, ("\u00ef\u00bb\u00bf<?xml version='1.0' standalone='yes'?>\n<!-- facts -->\n<?app x?>\n"
+                + "<FACT-LIST ><fact/><Fact ><AUTHOR>A</AUTHOR><author>B</author><fact-text/></Fact >"
+                + "<!-- between --></FACT-LIST>\n<!-- end -->\n").getBytes(StandardCharsets.ISO_8859_1));
+        assertConforms();
+        write("<fact-list/>");
+        assertConforms();
+    }
+
+    /**
+     * Tests that parts of the content of a fact list, as split by the ParallelParser, are
+     * scanned, and that the end tag of the fact list is not accepted as content.
+     */
+    @Test
+    void testContent() throws IOException {
+        FactCorpusGenerator.write(xml, 100, 7);
+        byte[] bytes = Files.readAllBytes(xml);
+        String document = new String(bytes, StandardCharsets.ISO_8859_1);
+        int start = document.indexOf("<fact-list>") + "<fact-list>".length();
+        int split = document.indexOf("<fact>", bytes.length / 2);
+        int end = document.lastIndexOf("</fact-list>");
+
+        List<Fact> facts = new ArrayList<>();
+        assertTrue(FactScanner.scanContent(ByteBuffer.wrap(bytes, start, split - start), facts::add));
+        assertTrue(FactScanner.scanContent(ByteBuffer.wrap(bytes, split, end - split), facts::add));
+        List<Fact> expected = FactScanner.scan(xml.toString());
+        assertEquals(expected.size(), facts.size());
+        for (int i = 0; i < facts.size(); i++)
+            assertEquals(expected.get(i).toString(), facts.get(i).toString());
+        assertFalse(FactScanner.scanContent(ByteBuffer.wrap(bytes, split, bytes.length - split), f -> {}));
+    }
+
+    /**
+     * Tests that repeated authors and types share one String instance.
+     */
+    @Test
+    void testSharedValues() throws IOException {
+        write("<fact-list><fact><author>A</author><fact-type>T</fact-type></fact>"
+                + "<fact><author>A</author><fact-type>&#84;</fact-type></fact></fact-list>");
+        List<Fact> facts = FactScanner.scan(xml.toString());
+        assertSame(facts.get(0).getAuthor(), facts.get(1).getAuthor());
+        assertSame(facts.get(0).getType(), facts.get(1).getType());
+    }
+
+    /**
+     * Tests that documents outside the supported subset are left to the Parser, whether
+     * they are well-formed or not.
+     */
+    @Test
+    void testUnsupported() throws IOException {
+        String fact = "<fact><author>A</author></fact>";
+        String[] documents = {
+                "<fact-list><fact id=\"1\"><author>A</author></fact></fact-list>", // Attribute
+                "<fact-list><fact><author>A<b>x</b></author></fact></fact-list>", // Unknown element
+                "<fact-list><note/>" + fact + "</fact-list>", // Unknown element
+                "<facts>" + fact + "</facts>", // Other root
+                "<fact-list>text" + fact + "</fact-list>", // Text in the fact list
+                "<fact-list><fact><author>&nbsp;</author></fact></fact-list>", // Undeclared entity
+                "<fact-list><fact><author>A</AUTHOR></fact></fact-list>", // Mismatched end tag
+                "<fact-list><fact><author>]]></author></fact></fact-list>", // CDATA end in text
+                "<fact-list><fact><author>&#0;</author></fact></fact-list>", // Not an XML character
+                "<fact-list><!-- a -- b -->" + fact + "</fact-list>", // Double hyphen in a comment
+                "<fact-list>" + fact, // Truncated
+                "<fact-list>" + fact + "</fact-list>x", // Text after the fact list
+        };
+        for (String document : documents) {
+            write(document);
+            assertNull(FactScanner.scan(xml.toString()), document);
+        }
+
+        Files.writeString(xml, "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><fact-list>" + fact + "</fact-list>");
+        assertNull(FactScanner.scan(xml.toString()));
+        Files.writeString(xml, "<!DOCTYPE fact-list><fact-list>" + fact + "</fact-list>");
+        assertNull(FactScanner.scan(xml.toString()));
+        Files.write(xml, new byte[] { '<', 'f', 'a', 'c', 't', '-', 'l', 'i', 's', 't', '>', '<', 'f', 'a', 'c', 't',
+                '>', '<', 'a', 'u', 't', 'h', 'o', 'r', '>', (byte) 0xC0, (byte) 0x80, '<', '/', 'a', 'u', 't', 'h', 'o',
+                'r', '>', '<', '/', 'f', 'a', 'c', 't', '>', '<', '/', 'f', 'a', 'c', 't', '-', 'l', 'i', 's', 't', '>' });
+        assertNull(FactScanner.scan(xml.toString())); // Overlong UTF-8
+    }
+
+    /**
+     * Writes a UTF-8 document with an XML declaration.
+     *
+     * @param document The document after the declaration
+     */
+    private void write(String document) throws IOException {
+        Files.writeString(xml, DECLARATION + document, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Asserts that the scanner reads the facts of the SAX parser in the same order.
+     */
+    private void assertConforms() throws IOException {
+        Handler handler = new Handler();
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(xml.toFile(), handler);
+        } catch (Exception e) {
+            throw new AssertionError("Not a well-formed test document", e);
+        }
+        FactList expected = handler.getList();
+        List<Fact> facts = FactScanner.scan(xml.toString());
+        assertNotNull(facts);
+        assertEquals(expected.getSize(), facts.size());
+        for (int i = 0; i < facts.size(); i++) {
+            assertEquals(expected.get(i).getAuthor(), facts.get(i).getAuthor());
+            assertEquals(expected.get(i).getType(), facts.get(i).getType());
+            assertEquals(expected.get(i).getText(), facts.get(i).getText());
+        }
+    }
+}
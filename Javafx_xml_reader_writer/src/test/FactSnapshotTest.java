@@ -0,0 +1,90 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import newfacts.FactList;
+import newfacts.Parser;
+
+/**
+ * This class tests that the Parser loads the same facts from its binary snapshot as
+ * from the XML file, and that a snapshot of a changed file is not used.
+ */
+class FactSnapshotTest {
+    private Path dir;
+    private Path xml;
+
+    /**
+     * Copies the fact file into a temporary directory.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("facts");
+        xml = dir.resolve("facts.xml");
+        Files.copy(Path.of("data/facts.xml"), xml);
+    }
+
+    /**
+     * Deletes the temporary directory.
+     */
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList())
+                Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Tests that facts loaded from the snapshot match the parsed facts.
+     */
+    @Test
+    void testSnapshotMatchesParser() {
+        FactList parsed = new Parser(xml.toString(), false).getFactList();
+        new Parser(xml.toString(), true).getFactList(); // Writes the snapshot
+        assertTrue(Files.exists(dir.resolve("facts.xml.snapshot")));
+
+        FactList loaded = new Parser(xml.toString(), true).getFactList();
+        assertEquals(parsed.getSize(), loaded.getSize());
+        for (int i = 0; i < parsed.getSize(); i++)
+            assertEquals(parsed.get(i).toString(), loaded.get(i).toString());
+    }
+
+    /**
+     * Tests that no snapshot is written unless it is requested.
+     */
+    @Test
+    void testSnapshotIsOptIn() {
+        new Parser(xml.toString()).getFactList();
+        assertFalse(Files.exists(dir.resolve("facts.xml.snapshot")));
+    }
+
+    /**
+     * Tests that the snapshot is rebuilt when the XML file changes.
+     */
+    @Test
+    void testChangedFileIsParsed() throws IOException {
+        final int before = new Parser(xml.toString(), true).getFactList().getSize();
+        String content = Files.readString(xml, StandardCharsets.UTF_8);
+        int end = content.lastIndexOf("</fact-list>");
+        Files.writeString(xml, content.substring(0, end)
+                + "<fact><author>Snapshot</author><fact-text>New fact</fact-text><fact-type>Fact</fact-type></fact>\n"
+                + content.substring(end), StandardCharsets.UTF_8);
+
+        FactList list = new Parser(xml.toString(), true).getFactList();
+        assertEquals(before + 1, list.getSize());
+        assertEquals("Snapshot", list.get(before).getAuthor());
+    }
+}
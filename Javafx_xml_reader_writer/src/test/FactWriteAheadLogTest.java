@@ -0,0 +1,188 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import newfacts.Fact;
+import newfacts.FactList;
+import newfacts.FactPersistenceService;
+import newfacts.Parser;
+
+/**
+ * This class tests that facts saved through the write-ahead log are replayed by the
+ * Parser, and that folding the log into the XML file keeps every fact exactly once.
+ */
+class FactWriteAheadLogTest {
+    private Path dir;
+    private Path xml;
+
+    /**
+     * Copies the fact file into a temporary directory.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("facts");
+        xml = dir.resolve("facts.xml");
+        Files.copy(Path.of("data/facts.xml"), xml);
+    }
+
+    /**
+     * Deletes the temporary directory.
+     */
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList())
+                Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Tests that logged facts are replayed, and still present once after compaction.
+     */
+    @Test
+    void testReplayAndCompaction() {
+        final int before = new Parser(xml.toString()).getFactList().getSize();
+        FactPersistenceService service = FactPersistenceService.forFile(xml.toString());
+        Fact fact = new Fact("Ada\tLovelace", "Fact", "Line one\nline two \\ <tag> & more");
+        service.append(List.of(fact)).join();
+
+        assertTrue(Files.exists(dir.resolve("facts.xml.wal")));
+        FactList logged = new Parser(xml.toString()).getFactList();
+        assertEquals(before + 1, logged.getSize());
+        assertEquals(fact.toString(), logged.get(before).toString());
+
+        service.compact().join();
+        assertFalse(Files.exists(dir.resolve("facts.xml.wal")));
+        FactList folded = new Parser(xml.toString()).getFactList();
+        assertEquals(before + 1, folded.getSize());
+        assertEquals(fact.toString(), folded.get(before).toString());
+    }
+
+    /**
+     * Tests that the save passing the compaction threshold completes once its facts are
+     * logged, before the log is folded into the XML file in the background.
+     */
+    @Test
+    void testFoldRunsAfterTheSave() throws IOException {
+        final long xmlSize = Files.size(xml);
+        final int before = new Parser(xml.toString()).getFactList().getSize();
+        FactPersistenceService service = FactPersistenceService.forFile(xml.toString());
+        service.setCompactionThreshold(1);
+        List<Fact> facts = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            facts.add(new Fact("Author " + i, "Fact", "Text " + i));
+
+        AtomicLong xmlSizeAtSave = new AtomicLong();
+        AtomicBoolean loggedAtSave = new AtomicBoolean();
+        service.append(facts).thenRun(() -> { // Runs on the writer thread when the save completes
+            xmlSizeAtSave.set(xml.toFile().length());
+            loggedAtSave.set(Files.exists(dir.resolve("facts.xml.wal")));
+        }).join();
+        assertEquals(xmlSize, xmlSizeAtSave.get());
+        assertTrue(loggedAtSave.get());
+
+        service.flush().join(); // Queued after the fold
+        assertFalse(Files.exists(dir.resolve("facts.xml.wal")));
+        assertTrue(Files.size(xml) > xmlSize);
+        assertEquals(before + facts.size(), new Parser(xml.toString()).getFactList().getSize());
+    }
+
+    /**
+     * Tests that folding the log keeps the permissions of the XML file.
+     */
+    @Test
+    void testCompactionKeepsPermissions() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Files.setPosixFilePermissions(xml, PosixFilePermissions.fromString("rw-r-----"));
+        FactPersistenceService service = FactPersistenceService.forFile(xml.toString());
+        service.append(List.of(new Fact("A", "B", "C"))).join();
+        service.compact().join();
+
+        assertEquals("rw-r-----", PosixFilePermissions.toString(Files.getPosixFilePermissions(xml)));
+    }
+
+    /**
+     * Tests that a log left behind after it was folded is not replayed twice.
+     */
+    @Test
+    void testFoldedLogIsIgnored() throws IOException {
+        FactPersistenceService service = FactPersistenceService.forFile(xml.toString());
+        service.append(List.of(new Fact("Alan Turing", "Science", "Machines can think."))).join();
+        Path wal = dir.resolve("facts.xml.wal");
+        byte[] log = Files.readAllBytes(wal);
+        final int logged = new Parser(xml.toString()).getFactList().getSize();
+
+        service.compact().join();
+        Files.write(wal, log); // As if the process stopped before deleting the log
+        assertEquals(logged, new Parser(xml.toString()).getFactList().getSize());
+    }
+
+    /**
+     * Tests that facts appended to a log left behind after it was folded are added once,
+     * without the folded facts being added again.
+     */
+    @Test
+    void testAppendAfterFoldedLog() throws IOException {
+        FactPersistenceService service = FactPersistenceService.forFile(xml.toString());
+        service.append(List.of(new Fact("Alan Turing", "Science", "Machines can think."))).join();
+        Path wal = dir.resolve("facts.xml.wal");
+        byte[] log = Files.readAllBytes(wal);
+        final int logged = new Parser(xml.toString()).getFactList().getSize();
+
+        service.compact().join();
+        Files.write(wal, log); // As if the process stopped before deleting the log
+        service.append(List.of(new Fact("Grace Hopper", "Science", "A ship in port is safe."))).join();
+        assertEquals(logged + 1, new Parser(xml.toString()).getFactList().getSize());
+
+        service.compact().join();
+        assertEquals(logged + 1, new Parser(xml.toString()).getFactList().getSize());
+    }
+
+    /**
+     * Tests that a torn last record is skipped.
+     */
+    @Test
+    void testTornRecordIsSkipped() throws IOException {
+        final int before = new Parser(xml.toString()).getFactList().getSize();
+        FactPersistenceService.forFile(xml.toString()).append(List.of(new Fact("A", "B", "C"))).join();
+        Files.writeString(dir.resolve("facts.xml.wal"), "0a1b2c\tTorn", StandardOpenOption.APPEND);
+
+        assertEquals(before + 1, new Parser(xml.toString()).getFactList().getSize());
+    }
+
+    /**
+     * Tests that facts appended after a torn last record are not lost with it.
+     */
+    @Test
+    void testAppendAfterTornRecord() throws IOException {
+        final int before = new Parser(xml.toString()).getFactList().getSize();
+        FactPersistenceService service = FactPersistenceService.forFile(xml.toString());
+        service.append(List.of(new Fact("A", "B", "C"))).join();
+        Files.writeString(dir.resolve("facts.xml.wal"), "0a1b2c\tTorn", StandardOpenOption.APPEND);
+        service.append(List.of(new Fact("D", "E", "F"))).join();
+
+        FactList facts = new Parser(xml.toString()).getFactList();
+        assertEquals(before + 2, facts.getSize());
+        assertEquals(new Fact("D", "E", "F").toString(), facts.get(before + 1).toString());
+    }
+}
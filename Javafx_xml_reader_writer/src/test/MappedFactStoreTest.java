@@ -0,0 +1,85 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import newfacts.Fact;
+import newfacts.FactList;
+import newfacts.FactPersistenceService;
+import newfacts.FactSearchMode;
+import newfacts.MappedFactStore;
+import newfacts.Parser;
+
+/**
+ * This class tests that the MappedFactStore returns the same facts and search
+ * results as a FactList loaded by the Parser.
+ */
+class MappedFactStoreTest {
+    private Path dir;
+    private Path xml;
+
+    /**
+     * Copies the fact file into a temporary directory.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("facts");
+        xml = dir.resolve("facts.xml");
+        Files.copy(Path.of("data/facts.xml"), xml);
+    }
+
+    /**
+     * Deletes the temporary directory.
+     */
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList())
+                Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Tests that the store holds the facts of the file and of its write-ahead log.
+     */
+    @Test
+    void testGet() throws IOException {
+        FactPersistenceService.forFile(xml.toString())
+                .append(List.of(new Fact("Grace Hopper", "Fact", "A ship in port is safe"))).join();
+        FactList list = new Parser(xml.toString(), false).getFactList();
+        try (MappedFactStore store = MappedFactStore.open(xml.toString())) {
+            assertEquals(list.getSize(), store.getSize());
+            for (int i = 0; i < list.getSize(); i++)
+                assertEquals(list.get(i).toString(), store.get(i).toString());
+            assertNull(store.get(store.getSize()));
+            assertNotNull(store.getRandom());
+        }
+    }
+
+    /**
+     * Tests that searches over the encoded facts match the searches of a FactList.
+     */
+    @Test
+    void testSearch() throws IOException {
+        FactList list = new Parser(xml.toString(), false).getFactList();
+        try (MappedFactStore store = MappedFactStore.open(xml.toString())) {
+            for (String term : new String[] { "software", "GLASS", "fallacy", "e", "the ", "\u00e9", "zzzz" }) {
+                for (FactSearchMode mode : FactSearchMode.values())
+                    assertEquals(String.valueOf(list.search(term, mode)), String.valueOf(store.search(term, mode)),
+                            term + " " + mode);
+            }
+        }
+    }
+}
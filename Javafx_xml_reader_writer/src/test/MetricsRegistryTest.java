@@ -0,0 +1,127 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import newfacts.FactListViewModel;
+import newfacts.FactSearchMode;
+import newfacts.MetricsRegistry;
+import newfacts.NewFactStatus;
+import newfacts.Parser;
+
+/**
+ * This class tests the metrics registry, and that loading, searching and saving facts
+ * record their metrics.
+ */
+class MetricsRegistryTest {
+
+    /**
+     * Tests counters, gauges and the precision of histogram percentiles.
+     */
+    @Test
+    void testMetrics() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("requests").add(3);
+        registry.counter("requests").increment();
+        registry.gauge("size", () -> 42);
+        MetricsRegistry.Histogram histogram = registry.histogram("latency");
+        for (int i = 1; i <= 100_000; i++)
+            histogram.record(i);
+
+        assertEquals(4, registry.counter("requests").get());
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000, histogram.getMax());
+        assertEquals(50_000.5, histogram.getMean(), 0.01);
+        long p50 = histogram.getPercentile(50);
+        long p99 = histogram.getPercentile(99);
+        assertTrue(p50 >= 50_000 && p50 <= 50_000 * 1.125, "p50 " + p50);
+        assertTrue(p99 >= 99_000 && p99 <= 100_000, "p99 " + p99);
+
+        String dump = registry.dump();
+        assertTrue(dump.contains("requests 4\n"), dump);
+        assertTrue(dump.contains("size 42\n"), dump);
+        assertTrue(dump.contains("latency.count 100000\n"), dump);
+    }
+
+    /**
+     * Tests that parsing, searching and saving record into the default registry, which
+     * is readable through JMX.
+     */
+    @Test
+    void testApplicationMetrics() throws Exception {
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        Path dir = Files.createTempDirectory("facts");
+        Path xml = dir.resolve("facts.xml");
+        Files.copy(Path.of("data/facts.xml"), xml);
+        try {
+            long parsed = metrics.counter("parser.facts").get();
+            int facts = new Parser(xml.toString(), false).getFactList().getSize();
+            assertEquals(parsed + facts, metrics.counter("parser.facts").get());
+
+            FactListViewModel viewModel = new FactListViewModel(xml.toString(), Runnable::run);
+            viewModel.loadFacts(xml.toString());
+            long saves = metrics.histogram("save.total.nanos").getCount();
+            assertEquals(NewFactStatus.SAVED, viewModel.saveNewFact("Metrics", "Measured fact", "Fact"));
+            assertEquals(saves + 1, metrics.histogram("save.total.nanos").getCount());
+            assertTrue(metrics.histogram("save.log.nanos").getCount() > 0);
+
+            long searches = metrics.histogram("search.TEXT.nanos").getCount();
+            viewModel.searchFact("Measured fact", FactSearchMode.TEXT);
+            assertEquals(searches + 1, metrics.histogram("search.TEXT.nanos").getCount());
+            assertTrue(metrics.histogram("search.TEXT.matches").getMax() >= 1);
+
+            metrics.registerMBean();
+            Object size = ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(new ObjectName("newfacts:type=Metrics"), "factlist.size");
+            assertEquals((long) facts + 1, size);
+            viewModel.close();
+            assertFalse(metrics.snapshot().containsKey("factlist.size")); // The view model is not kept reachable
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : files.toList())
+                    Files.delete(file);
+            }
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * Tests that loads from the snapshot count as loads, but not as parsed bytes.
+     */
+    @Test
+    void testSnapshotLoadMetrics() throws Exception {
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        Path dir = Files.createTempDirectory("facts");
+        Path xml = dir.resolve("facts.xml");
+        Files.copy(Path.of("data/facts.xml"), xml);
+        try {
+            long bytes = metrics.counter("parser.bytes").get();
+            new Parser(xml.toString(), true).getFactList(); // Writes the snapshot
+            assertEquals(bytes + Files.size(xml), metrics.counter("parser.bytes").get());
+
+            long hits = metrics.counter("parser.snapshot.hits").get();
+            long loads = metrics.histogram("parser.load.nanos").getCount();
+            new Parser(xml.toString(), true).getFactList();
+            assertEquals(hits + 1, metrics.counter("parser.snapshot.hits").get());
+            assertEquals(loads + 1, metrics.histogram("parser.load.nanos").getCount());
+            assertEquals(bytes + Files.size(xml), metrics.counter("parser.bytes").get());
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : files.toList())
+                    Files.delete(file);
+            }
+            Files.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import newfacts.Fact;
+import newfacts.FactList;
+import newfacts.ParallelParser;
+import newfacts.Parser;
+
+/**
+ * This class tests that the ParallelParser reads the same facts in the same order as
+ * the sequential Parser, and that files it cannot split are left to the Parser.
+ */
+class ParallelParserTest {
+    private Path dir;
+    private ForkJoinPool pool;
+
+    /**
+     * Creates a temporary directory and a pool of four threads.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("facts");
+        pool = new ForkJoinPool(4);
+    }
+
+    /**
+     * Deletes the temporary directory and stops the pool.
+     */
+    @AfterEach
+    void tearDown() throws IOException {
+        pool.shutdown();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList())
+                Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Tests that a file split into several chunks gives the facts of the Parser.
+     */
+    @Test
+    void testMatchesParser() throws IOException {
+        Path xml = dir.resolve("facts.xml");
+        FactCorpusGenerator.write(xml, 15000, 42);
+        assertMatches(xml);
+    }
+
+    /**
+     * Tests that a file of one chunk gives the facts of the Parser.
+     */
+    @Test
+    void testSingleChunk() throws IOException {
+        Path xml = dir.resolve("facts.xml");
+        Files.copy(Path.of("data/facts.xml"), xml);
+        assertMatches(xml);
+    }
+
+    /**
+     * Tests that a file with a document type declaration is not split.
+     */
+    @Test
+    void testDoctypeIsNotSplit() throws IOException {
+        Path xml = dir.resolve("facts.xml");
+        Files.writeString(xml, "<?xml version=\"1.0\"?>\n<!DOCTYPE fact-list [<!ENTITY who \"Ada\">]>\n"
+                + "<fact-list><fact><author>&who;</author><type>T</type><text>X</text></fact></fact-list>\n");
+        assertNull(new ParallelParser(pool).parse(xml.toString()));
+        assertEquals("Ada", new Parser(xml.toString(), false).getFactList().get(0).getAuthor());
+    }
+
+    /**
+     * Tests that a fact start tag in a comment before the first fact is not read as a fact.
+     */
+    @Test
+    void testTagInLeadingComment() throws IOException {
+        Path xml = dir.resolve("facts.xml");
+        Files.writeString(xml, "<?xml version=\"1.0\"?>\n<fact-list><!-- <fact><author>No</author></fact> -->"
+                + "<fact><author>Yes</author><type>T</type><text>X</text></fact></fact-list>\n");
+        assertMatches(xml);
+    }
+
+    /**
+     * Tests that a fact start tag inside a comment, where a chunk may start, makes the
+     * file be left to the Parser instead of losing or inventing facts.
+     */
+    @Test
+    void testTagInCommentIsNotSplit() throws IOException {
+        Path xml = dir.resolve("facts.xml");
+        String fact = "<fact><author>Yes</author><type>T</type><text>X</text></fact>\n";
+        Files.writeString(xml, "<?xml version=\"1.0\"?>\n<fact-list>" + fact + "<!-- "
+                + "<fact> ".repeat((int) ParallelParser.MIN_CHUNK_SIZE / 4) + "-->" + fact + "</fact-list>\n");
+        assertNull(new ParallelParser(pool).parse(xml.toString()));
+        assertEquals(2, new Parser(xml.toString(), false).getFactList().getSize());
+    }
+
+    /**
+     * Asserts that the ParallelParser reads the facts of the Parser in the same order.
+     *
+     * @param xml The file to parse
+     */
+    private void assertMatches(Path xml) throws IOException {
+        FactList expected = new Parser(xml.toString(), false).getFactList();
+        List<Fact> facts = new ParallelParser(pool).parse(xml.toString());
+        assertEquals(expected.getSize(), facts.size());
+        for (int i = 0; i < facts.size(); i++)
+            assertEquals(expected.get(i).toString(), facts.get(i).toString());
+    }
+}
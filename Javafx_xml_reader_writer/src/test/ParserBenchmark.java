@@ -0,0 +1,40 @@
+package test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import newfacts.Parser;
+
+/**
+ * Measures the parse time and allocation rate of Parser on a synthetic fact file.
+ * Usage: ParserBenchmark [facts] [iterations]
+ */
+public class ParserBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int facts = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Path file = Files.createTempFile("facts", ".xml");
+        try {
+            FactCorpusGenerator.write(file, facts, 42);
+            double mb = Files.size(file) / (1024.0 * 1024.0);
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                    .getThreadMXBean();
+            long thread = Thread.currentThread().getId();
+
+            for (int i = 0; i < iterations; i++) {
+                long bytes = threads.getThreadAllocatedBytes(thread);
+                long start = System.nanoTime();
+                int parsed = new Parser(file.toString(), false).getFactList().getSize();
+                double ms = (System.nanoTime() - start) / 1e6;
+                double allocated = (threads.getThreadAllocatedBytes(thread) - bytes) / (1024.0 * 1024.0);
+                System.out.printf("run %2d: %d facts, %.1f MB, %.2f ms/MB, %.2f MB allocated/MB%n", i, parsed, mb,
+                        ms / mb, allocated / mb);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import newfacts.Fact;
+import newfacts.FactList;
+import newfacts.Parser;
+import newfacts.StreamingParser;
+
+/**
+ * This class provides unit tests for the StreamingParser class.
+ * It checks that the streamed facts match the facts loaded by Parser.
+ */
+class StreamingParserTest {
+    private final static String INPUT_FILE = "data/facts.xml";
+
+    /**
+     * Tests that streaming the XML file yields the same facts, in order, as Parser.
+     */
+    @Test
+    void testSameFactsAsParser() {
+        FactList expected = new Parser(INPUT_FILE).getFactList();
+        List<Fact> actual;
+        try (Stream<Fact> stream = StreamingParser.stream(INPUT_FILE)) {
+            actual = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(expected.getSize(), actual.size());
+        for (int i = 0; i < actual.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+        }
+    }
+
+    /**
+     * Tests that text split by entities into several character events is kept whole.
+     */
+    @Test
+    void testSplitText() {
+        String xml = "<fact-list><fact><author>Tom &amp; Jerry</author>"
+                + "<fact-text>a &lt; b <![CDATA[and c > d]]></fact-text><fact-type>Fact</fact-type></fact></fact-list>";
+        StreamingParser parser = new StreamingParser(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+
+        Fact fact = parser.next();
+        assertEquals("Tom & Jerry", fact.getAuthor());
+        assertEquals("a < b and c > d", fact.getText());
+        assertEquals("Fact", fact.getType());
+        assertFalse(parser.hasNext());
+    }
+
+    /**
+     * Tests that repeated authors and types are shared between facts by both parsers.
+     */
+    @Test
+    void testSharedValues() {
+        String xml = "<fact-list><fact><author>Ann</author><fact-text>One</fact-text><fact-type>Fact</fact-type></fact>"
+                + "<fact><author>Ann</author><fact-text>Two</fact-text><fact-type>Fact</fact-type></fact></fact-list>";
+        StreamingParser parser = new StreamingParser(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        Fact first = parser.next();
+        Fact second = parser.next();
+        assertSame(first.getAuthor(), second.getAuthor());
+        assertSame(first.getType(), second.getType());
+
+        FactList list = new Parser(INPUT_FILE, false).getFactList();
+        for (int i = 1; i < list.getSize(); i++) {
+            if (list.get(i).getType().equals(list.get(0).getType()))
+                assertSame(list.get(0).getType(), list.get(i).getType());
+        }
+    }
+
+    /**
+     * Tests that a missing file yields an empty stream.
+     */
+    @Test
+    void testMissingFile() {
+        try (Stream<Fact> stream = StreamingParser.stream("data/missing.xml")) {
+            assertEquals(0, stream.count());
+        }
+    }
+}